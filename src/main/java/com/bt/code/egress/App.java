@@ -11,6 +11,7 @@ import com.bt.code.egress.process.WordReplacementGenerator;
 import com.bt.code.egress.read.FilePathMatcher;
 import com.bt.code.egress.read.InstructionMatcher;
 import com.bt.code.egress.read.LineGuardIgnoreMatcher;
+import com.bt.code.egress.read.RuleProfiler;
 import com.bt.code.egress.report.FileErrors;
 import com.bt.code.egress.report.Report;
 import com.bt.code.egress.report.ReportCollector;
@@ -93,7 +94,7 @@ public class App implements ApplicationRunner {
             LineReplacer lineReplacer = createLineReplacer(reportHelper, instructionMatcher, reportCollector);
             FileReplacer fileReplacer = createFileReplacer(lineReplacer, reportHelper, instructionMatcher, reportCollector);
             FolderWriter folderWriter = createFolderWriter();
-            folderReplacer = createFolderReplacer(fileReplacer, lineReplacer, reportHelper, instructionMatcher, reportCollector, folderWriter);
+            folderReplacer = createFolderReplacer(fileReplacer, lineReplacer, reportHelper, reportCollector, folderWriter);
             return this;
         }
 
@@ -114,12 +115,19 @@ public class App implements ApplicationRunner {
         }
 
         public InstructionMatcher createInstructionMatcher(ReportHelper reportHelper) {
-            return InstructionMatcher.fromConfigs(reportHelper, config.getDirectionConfig().getInstruction().getFiles());
+            InstructionMatcher instructionMatcher = InstructionMatcher.fromConfig(reportHelper, config.getDirectionConfig().getInstruction());
+            closeListeners.add(instructionMatcher::dumpStats);
+            return instructionMatcher;
         }
 
         public LineReplacer createLineReplacer(ReportHelper reportHelper, InstructionMatcher instructionMatcher, ReportCollector reportCollector) {
             Config.DirectionConfig directionConfig = config.getDirectionConfig();
+            if (directionConfig.getRuleProfile() != null) {
+                RuleProfiler.setEnabled(true);
+                closeListeners.add(() -> RuleProfiler.dump(directionConfig.getRuleProfile().toPath()));
+            }
             LineGuardIgnoreMatcher lineMatcher = LineGuardIgnoreMatcher.fromConfigs(directionConfig.getWord(), instructionMatcher.getSimpleReplacements());
+            closeListeners.add(lineMatcher::dumpStats);
             WordReplacementGenerator wordReplacementGenerator = Config.ScanDirection.RESTORE.equals(config.getScan().getScanMode())
                     ? instructionMatcher.getRestoreWordReplacer()
                     : new WordReplacementGenerator(directionConfig.getDefaultTemplate());
@@ -145,7 +153,8 @@ public class App implements ApplicationRunner {
 
         public FileReplacer createFileReplacer(LineReplacer lineReplacer, ReportHelper reportHelper,
                                                InstructionMatcher instructionMatcher, ReportCollector reportCollector) {
-            TextFileReplacer textFileReplacer = new TextFileReplacer(lineReplacer, reportHelper.getContextGenerator());
+            TextFileReplacer textFileReplacer = new TextFileReplacer(lineReplacer, reportHelper.getContextGenerator(),
+                    config.getRead().isWholeFile(), config.getRead().getParallelFileSize(), config.getRead().getStreamFileSize());
             boolean isReplace = Config.ScanDirection.REPLACE.equals(config.getScan().getScanMode());
             CsvFileReplacer csvFileReplacer = new CsvFileReplacer(textFileReplacer, lineReplacer,
                     instructionMatcher, reportHelper, reportCollector, config.getCsv(), !isReplace);
@@ -167,11 +176,10 @@ public class App implements ApplicationRunner {
         }
 
         public FolderReplacer createFolderReplacer(FileReplacer fileReplacer, LineReplacer lineReplacer,
-                                                   ReportHelper reportHelper, InstructionMatcher instructionMatcher,
-                                                   ReportCollector reportCollector, FolderWriter folderWriter) {
+                                                   ReportHelper reportHelper, ReportCollector reportCollector,
+                                                   FolderWriter folderWriter) {
             FilePathMatcher filePathMatcher = FilePathMatcher.fromConfig(config.getDirectionConfig().getFile());
-            return new FolderReplacer(fileReplacer, filePathMatcher,
-                    instructionMatcher.getAllowFilePathMatcher(), lineReplacer, reportHelper.getContextGenerator(),
+            return new FolderReplacer(fileReplacer, filePathMatcher, lineReplacer, reportHelper.getContextGenerator(),
                     reportCollector, folderWriter, folderWriter);
         }
     }
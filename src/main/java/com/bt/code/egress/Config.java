@@ -70,6 +70,12 @@ public class Config {
         // Path(".") was resolved as target/classes
         File folder;
         int threads = 10;
+        // match text file as one buffer instead of line by line, faster for many short lines
+        boolean wholeFile = false;
+        // text file with more chars is split into chunks of lines matched in parallel on common pool, 0 to disable
+        long parallelFileSize = 0;
+        // text file with more chars is streamed to temp file in windows of this size, 0 to read whole file
+        long streamFileSize = 16_000_000;
     }
 
     @Data
@@ -96,6 +102,8 @@ public class Config {
         File restoreInstructionLast;
         File generatedReplacement;
         File fileError;
+        // evaluations, hits and time of every matching rule, not written if not set
+        File ruleProfile;
     }
 
     public Config.DirectionConfig getDirectionConfig() {
@@ -151,6 +159,10 @@ public class Config {
     public static class MatchingMaps {
         MatchingMap guard = new MatchingMap();
         MatchingSet ignore = new MatchingSet();
+        // words with ignore decision cached, 0 to disable
+        long cacheSize = 100_000;
+        // chars read by regex per char of text, pattern exceeding it fails the file, 0 - unlimited
+        int patternStepsPerChar = 0;
     }
 
     @Data
@@ -208,6 +220,8 @@ public class Config {
     @Data
     public static class InstructionConfig {
         Set<File> files = new HashSet<>();
+        // decisions by word, context and matched file filters cached, 0 to disable
+        long cacheSize = 100_000;
     }
 
 
@@ -0,0 +1,111 @@
+package com.bt.code.egress.file;
+
+import lombok.Value;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Classify file by its first bytes: zip, other binary, or text with optional BOM charset.
+ * Header is read from stream opened for processing and stream is reset, so file is opened once.
+ */
+public class ContentSniffer {
+    public static final int HEADER_SIZE = 8 << 10;
+
+    private static final byte[][] BINARY_MAGIC = {
+            {(byte) 0x89, 'P', 'N', 'G'},
+            {'G', 'I', 'F', '8'},
+            {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF},
+            {'%', 'P', 'D', 'F', '-'},
+            {(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE},
+            {0x7F, 'E', 'L', 'F'},
+            {0x1F, (byte) 0x8B},
+            {'7', 'z', (byte) 0xBC, (byte) 0xAF, 0x27, 0x1C},
+            {'R', 'a', 'r', '!', 0x1A, 0x07},
+    };
+    private static final String[] BINARY_MAGIC_NAMES = {"PNG", "GIF", "JPEG", "PDF", "class", "ELF", "gzip", "7z", "RAR"};
+    private static final byte[] ZIP_MAGIC = {'P', 'K', 0x03, 0x04};
+    private static final byte[] UTF_8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+    private static final byte[] UTF_16_BE_BOM = {(byte) 0xFE, (byte) 0xFF};
+    private static final byte[] UTF_16_LE_BOM = {(byte) 0xFF, (byte) 0xFE};
+
+    public enum ContentType {
+        ZIP,
+        BINARY,
+        TEXT
+    }
+
+    @Value
+    public static class Content {
+        ContentType type;
+        // why content is binary, null for text
+        String reason;
+        // charset given by BOM, null if text has no BOM; BOM is decoded as first char, so it is written back
+        Charset charset;
+    }
+
+    /**
+     * @return stream which supports reset to start after {@link #sniff(InputStream)}
+     */
+    public static InputStream open(Path file) throws IOException {
+        return new BufferedInputStream(LocalFiles.newInputStream(file), HEADER_SIZE);
+    }
+
+    /**
+     * Read header of stream and reset stream to its start.
+     */
+    public static Content sniff(InputStream inputStream) throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        inputStream.mark(HEADER_SIZE);
+        int length = 0;
+        int read;
+        while (length < header.length && (read = inputStream.read(header, length, header.length - length)) >= 0) {
+            length += read;
+        }
+        inputStream.reset();
+        return sniff(header, length);
+    }
+
+    public static Content sniff(byte[] header, int length) {
+        if (startsWith(header, length, ZIP_MAGIC)) {
+            return new Content(ContentType.ZIP, null, null);
+        }
+        if (startsWith(header, length, UTF_8_BOM)) {
+            return new Content(ContentType.TEXT, null, StandardCharsets.UTF_8);
+        }
+        // UTF-16 text has NUL bytes, BOM tells it from binary
+        if (startsWith(header, length, UTF_16_BE_BOM)) {
+            return new Content(ContentType.TEXT, null, StandardCharsets.UTF_16BE);
+        }
+        if (startsWith(header, length, UTF_16_LE_BOM)) {
+            return new Content(ContentType.TEXT, null, StandardCharsets.UTF_16LE);
+        }
+        for (int i = 0; i < BINARY_MAGIC.length; i++) {
+            if (startsWith(header, length, BINARY_MAGIC[i])) {
+                return new Content(ContentType.BINARY, BINARY_MAGIC_NAMES[i] + " header", null);
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            if (header[i] == 0) {
+                return new Content(ContentType.BINARY, "NUL byte", null);
+            }
+        }
+        return new Content(ContentType.TEXT, null, null);
+    }
+
+    private static boolean startsWith(byte[] header, int length, byte[] magic) {
+        if (length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (header[i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,80 @@
+package com.bt.code.egress.file;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * Reader decoding bytes of buffer directly into array of caller, so block size is set by caller's buffer,
+ * not by the fixed 8 KB byte buffer of InputStreamReader. Malformed input is reported as exception.
+ */
+public class DecodingReader extends Reader {
+    private final ByteBuffer input;
+    private final CharsetDecoder decoder;
+    // surrogate pair decoded for a single char read, second char is returned by next read
+    private final char[] pair = new char[2];
+    private int pending = -1;
+    private boolean flushed;
+
+    public DecodingReader(ByteBuffer bytes, Charset charset) {
+        this.input = bytes.duplicate();
+        this.decoder = charset.newDecoder();
+    }
+
+    /**
+     * @return number of chars read, never 0 for len > 0
+     */
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (pending >= 0) {
+            cbuf[off] = (char) pending;
+            pending = -1;
+            return 1;
+        }
+        if (len == 1) {
+            // surrogate pair does not fit into one char, decode it into pair
+            int count = decode(pair, 0, pair.length);
+            if (count > 0) {
+                cbuf[off] = pair[0];
+                if (count > 1) {
+                    pending = pair[1];
+                }
+            }
+            return count > 0 ? 1 : count;
+        }
+        return decode(cbuf, off, len);
+    }
+
+    /**
+     * @param len at least 2, so surrogate pair fits
+     */
+    private int decode(char[] cbuf, int off, int len) throws IOException {
+        if (flushed) {
+            return -1;
+        }
+        CharBuffer output = CharBuffer.wrap(cbuf, off, len);
+        CoderResult result = decoder.decode(input, output, true);
+        if (result.isError()) {
+            result.throwException();
+        }
+        if (!input.hasRemaining() && result.isUnderflow()) {
+            result = decoder.flush(output);
+            flushed = result.isUnderflow();
+        }
+        int count = output.position() - off;
+        return count == 0 && flushed ? -1 : count;
+    }
+
+    @Override
+    public void close() {
+        flushed = true;
+        pending = -1;
+    }
+}
@@ -1,23 +1,40 @@
 package com.bt.code.egress.file;
 
-import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Spliterator;
-import java.util.function.Consumer;
+import java.util.Spliterators;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 public class KeepEolFiles {
-    public static Stream<String> read(BufferedReader bufferedReader) {
-        return StreamSupport.stream(new LastEolSpliterator(bufferedReader), false);
+    public static final String LF = "\n";
+    public static final String CRLF = "\r\n";
+    public static final String CR = "\r";
+    // last line has no terminator
+    public static final String NONE = "";
+
+    private static final int BUFFER_SIZE = 64 << 10;
+
+    public static Stream<String> read(Reader reader) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new LineIterator(reader),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
     }
 
+    public static LineIterator lines(Reader reader) {
+        return new LineIterator(reader);
+    }
+
+    /**
+     * Write lines separated by system line separator.
+     */
     public static void write(BufferedWriter writer, List<String> lines) throws IOException {
         Objects.requireNonNull(lines);
         for (int i = 0; i < lines.size(); i++) {
@@ -29,54 +46,121 @@ public class KeepEolFiles {
         }
     }
 
-    @RequiredArgsConstructor
-    static class LastEolSpliterator implements Spliterator<String> {
-        private final BufferedReader bufferedReader;
-        private boolean prevEOL;
+    /**
+     * Write each line followed by its original terminator, so text read by {@link #lines} is written back exactly.
+     */
+    public static void write(BufferedWriter writer, List<String> lines, List<String> lineEnds) throws IOException {
+        Objects.requireNonNull(lines);
+        if (lineEnds == null) {
+            write(writer, lines);
+            return;
+        }
+        if (lines.size() != lineEnds.size()) {
+            throw new IllegalArgumentException(String.format("%s lines, but %s line ends", lines.size(), lineEnds.size()));
+        }
+        for (int i = 0; i < lines.size(); i++) {
+            writer.append(lines.get(i)).append(lineEnds.get(i));
+        }
+    }
+
+    /**
+     * Split text at LF, CRLF or CR, terminator of line returned by next is available as lineEnd.
+     * Text ending with terminator has last empty line, so line count is the same for files with and without it.
+     * Chars are read in blocks and scanned in array, line spanning blocks is collected in reused builder.
+     */
+    public static class LineIterator implements Iterator<String> {
+        private final Reader reader;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private final StringBuilder spill = new StringBuilder();
+        private int position;
+        private int limit;
+        private boolean prevEol;
+        private String nextLine;
+        private String nextLineEnd;
+        private String lineEnd;
+
+        LineIterator(Reader reader) {
+            this.reader = reader;
+        }
 
-        @SneakyThrows
         @Override
-        public boolean tryAdvance(Consumer<? super String> action) {
-            StringBuilder stringBuilder = new StringBuilder();
-            int nextChar;
-            while ((nextChar = bufferedReader.read()) != -1) {
-                if (nextChar == '\n') {
-                    prevEOL = true;
-                    break;
-                } else if (nextChar == '\r') {
-                    bufferedReader.mark(1);
-                    if (bufferedReader.read() != '\n') {
-                        bufferedReader.reset();
-                    }
-                    prevEOL = true;
-                    break;
-                }
-                prevEOL = false;
-                stringBuilder.append((char) nextChar);
+        public boolean hasNext() {
+            if (nextLine == null) {
+                nextLine = readLine();
             }
-            if (nextChar == -1 && stringBuilder.length() == 0) {
-                if (!prevEOL) {
-                    return false;
-                }
-                prevEOL = false;
-            }
-            action.accept(stringBuilder.toString());
-            return true;
+            return nextLine != null;
         }
 
         @Override
-        public Spliterator<String> trySplit() {
-            return null;
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String line = nextLine;
+            lineEnd = nextLineEnd;
+            nextLine = null;
+            return line;
         }
 
-        @Override
-        public long estimateSize() {
-            return 0;
+        /**
+         * @return terminator of line last returned by next: LF, CRLF, CR or NONE
+         */
+        public String getLineEnd() {
+            return lineEnd;
         }
 
-        @Override
-        public int characteristics() {
-            return 0;
+        @SneakyThrows
+        private String readLine() {
+            spill.setLength(0);
+            while (true) {
+                if (position == limit && !fill()) {
+                    if (spill.length() == 0 && !prevEol) {
+                        return null;
+                    }
+                    prevEol = false;
+                    nextLineEnd = NONE;
+                    return spill.toString();
+                }
+                int i = position;
+                while (i < limit && buffer[i] != '\n' && buffer[i] != '\r') {
+                    i++;
+                }
+                if (i == limit) {
+                    spill.append(buffer, position, limit - position);
+                    position = limit;
+                    continue;
+                }
+                String line = spill.length() == 0
+                        ? new String(buffer, position, i - position)
+                        : spill.append(buffer, position, i - position).toString();
+                position = i + 1;
+                if (buffer[i] == '\n') {
+                    nextLineEnd = LF;
+                } else if ((position < limit || fill()) && buffer[position] == '\n') {
+                    position++;
+                    nextLineEnd = CRLF;
+                } else {
+                    nextLineEnd = CR;
+                }
+                prevEol = true;
+                return line;
+            }
+        }
+
+        /**
+         * @return false at end of text
+         */
+        private boolean fill() throws IOException {
+            int read;
+            do {
+                read = reader.read(buffer, 0, buffer.length);
+            } while (read == 0);
+            if (read < 0) {
+                return false;
+            }
+            position = 0;
+            limit = read;
+            return true;
         }
     }
 }
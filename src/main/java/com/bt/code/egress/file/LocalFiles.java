@@ -7,13 +7,17 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.CopyOption;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.FileAttribute;
 import java.util.List;
 import java.util.stream.Stream;
@@ -31,6 +35,10 @@ public class LocalFiles {
             return Files.newBufferedWriter(path, options);
         }
 
+        public BufferedWriter newBufferedWriter(Path path, Charset cs, OpenOption... options) throws IOException {
+            return Files.newBufferedWriter(path, cs, options);
+        }
+
         public BufferedReader newBufferedReader(Path path, Charset cs) throws IOException {
             return Files.newBufferedReader(path, cs);
         }
@@ -73,6 +81,38 @@ public class LocalFiles {
                 throws IOException {
             return Files.write(path, lines, options);
         }
+
+        public Path createTempFile(String prefix, String suffix) throws IOException {
+            return Files.createTempFile(prefix, suffix);
+        }
+
+        public boolean deleteIfExists(Path path) throws IOException {
+            return Files.deleteIfExists(path);
+        }
+
+        public long size(Path path) throws IOException {
+            return Files.size(path);
+        }
+
+        /**
+         * @return read only mapping of whole file, null if file can not be mapped
+         * (not on default file system or above 2 GB), then it is to be read as stream.
+         * Java 8 has no API to unmap: mapping stays open until buffer is garbage collected,
+         * so address space and file handle of a processed file may be held for a while,
+         * on Windows such file can not be deleted or replaced until then.
+         */
+        public ByteBuffer map(Path path) throws IOException {
+            if (path.getFileSystem() != FileSystems.getDefault()) {
+                return null;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    return null;
+                }
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+        }
     }
 
     public static BufferedWriter newBufferedWriter(Path path, OpenOption... options) throws IOException {
@@ -80,6 +120,10 @@ public class LocalFiles {
     }
 
 
+    public static BufferedWriter newBufferedWriter(Path path, Charset cs, OpenOption... options) throws IOException {
+        return instance.newBufferedWriter(path, cs, options);
+    }
+
     public static BufferedReader newBufferedReader(Path path, Charset cs) throws IOException {
         return instance.newBufferedReader(path, cs);
     }
@@ -126,5 +170,20 @@ public class LocalFiles {
             throws IOException {
         return instance.write(path, lines, options);
     }
-}
 
+    public static Path createTempFile(String prefix, String suffix) throws IOException {
+        return instance.createTempFile(prefix, suffix);
+    }
+
+    public static boolean deleteIfExists(Path path) throws IOException {
+        return instance.deleteIfExists(path);
+    }
+
+    public static long size(Path path) throws IOException {
+        return instance.size(path);
+    }
+
+    public static ByteBuffer map(Path path) throws IOException {
+        return instance.map(path);
+    }
+}
@@ -2,34 +2,103 @@ package com.bt.code.egress.file;
 
 import com.bt.code.egress.process.FileLocation;
 import com.bt.code.egress.report.FileErrors;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.MalformedInputException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.List;
 
+/**
+ * Select charset before file is processed: bytes are validated as UTF-8 while they are read,
+ * so processing is not repeated when malformed input is found near the end of file.
+ * File up to IN_MEMORY_SIZE is read from disk once and decoded from memory,
+ * larger file is memory mapped, validated and decoded from mapping in large blocks,
+ * ASCII content is decoded as Latin-1, one char per byte with no malformed input to check.
+ * Mapping is released only when its buffer is garbage collected, see {@link LocalFiles#map(java.nio.file.Path)}.
+ * Larger file which can not be mapped is validated in one pass and then decoded from disk.
+ * Text with UTF-16 BOM found by {@link ContentSniffer} is decoded by BOM, BOM is kept as first char of text.
+ */
 @Slf4j
 public class ReaderCharsetSelector {
+    private static final int IN_MEMORY_SIZE = 16 << 20;
+    private static final int BUFFER_SIZE = 64 << 10;
+    private static final int MAPPED_BUFFER_SIZE = 1 << 20;
 
     public static <T> T doWithBufferedReader(FileLocation file, BufferedReaderFunction<T> function,
                                              Charset... additionalCharsets) throws IOException {
-        Charset charset = StandardCharsets.UTF_8;
-        Charset newCharset;
-        Iterator<Charset> additionalCharsetIterator = Arrays.asList(additionalCharsets).iterator();
+        try (InputStream inputStream = ContentSniffer.open(file.getFilePath())) {
+            return doWithBufferedReader(file, inputStream, ContentSniffer.sniff(inputStream), IN_MEMORY_SIZE,
+                    function, additionalCharsets);
+        }
+    }
+
+    /**
+     * Read text of file from stream already opened and sniffed, stream is at start of file.
+     */
+    public static <T> T doWithBufferedReader(FileLocation file, InputStream inputStream, ContentSniffer.Content content,
+                                             BufferedReaderFunction<T> function,
+                                             Charset... additionalCharsets) throws IOException {
+        return doWithBufferedReader(file, inputStream, content, IN_MEMORY_SIZE, function, additionalCharsets);
+    }
 
-        for (int i = 0; i <= additionalCharsets.length; i++) {
-            try (BufferedReader bufferedReader = LocalFiles.newBufferedReader(file.getFilePath(), charset)) {
+    static <T> T doWithBufferedReader(FileLocation file, int inMemorySize, BufferedReaderFunction<T> function,
+                                      Charset... additionalCharsets) throws IOException {
+        try (InputStream inputStream = ContentSniffer.open(file.getFilePath())) {
+            return doWithBufferedReader(file, inputStream, ContentSniffer.sniff(inputStream), inMemorySize,
+                    function, additionalCharsets);
+        }
+    }
+
+    private static <T> T doWithBufferedReader(FileLocation file, InputStream inputStream, ContentSniffer.Content content,
+                                              int inMemorySize, BufferedReaderFunction<T> function,
+                                              Charset... additionalCharsets) throws IOException {
+        if (content.getCharset() != null && !content.getCharset().equals(StandardCharsets.UTF_8)) {
+            // BOM of other Unicode charset, no guessing; output is encoded with the same charset
+            Charset charset = content.getCharset();
+            try (BufferedReader bufferedReader = new ReopenableBufferedReader(
+                    new InputStreamReader(inputStream, charset.newDecoder()), BUFFER_SIZE,
+                    () -> LocalFiles.newBufferedReader(file.getFilePath(), charset))) {
+                return function.apply(bufferedReader);
+            }
+        }
+        Utf8Validator validator = new Utf8Validator();
+        ReadBytes readBytes = map(file, inMemorySize, validator);
+        if (readBytes == null) {
+            readBytes = read(inputStream, inMemorySize, validator);
+        }
+
+        List<Charset> charsets = new ArrayList<>();
+        if (validator.isValid()) {
+            charsets.add(StandardCharsets.UTF_8);
+        } else {
+            FileErrors.addError(file.toReportedPath(), String.format("%s encoding incompatible", StandardCharsets.UTF_8));
+            if (additionalCharsets.length == 0) {
+                throw new MalformedInputException(1);
+            }
+            log.error("{} encoding incompatible, trying {}: {}", StandardCharsets.UTF_8, additionalCharsets[0], file);
+        }
+        charsets.addAll(Arrays.asList(additionalCharsets));
+
+        for (int i = 0; i < charsets.size(); i++) {
+            Charset charset = charsets.get(i);
+            try (BufferedReader bufferedReader = newBufferedReader(file, readBytes, charset)) {
                 return function.apply(bufferedReader);
             } catch (MalformedInputException e) {
+                // not expected after validation, only if additional charset is not single byte
                 FileErrors.addError(file.toReportedPath(), String.format("%s encoding incompatible", charset));
-                if (additionalCharsetIterator.hasNext()) {
-                    newCharset = additionalCharsetIterator.next();
-                    log.error("{} encoding incompatible, trying {}: {}", charset, newCharset, file);
-                    charset = newCharset;
+                if (i + 1 < charsets.size()) {
+                    log.error("{} encoding incompatible, trying {}: {}", charset, charsets.get(i + 1), file);
                 } else {
                     throw e;
                 }
@@ -38,6 +107,76 @@ public class ReaderCharsetSelector {
         throw new IllegalArgumentException("All charsets exhausted while trying to create BufferedReader");
     }
 
+    private static BufferedReader newBufferedReader(FileLocation file, ReadBytes readBytes, Charset charset) throws IOException {
+        return new ReopenableBufferedReader(newReader(file, readBytes, charset),
+                readBytes.getMapped() != null ? MAPPED_BUFFER_SIZE : BUFFER_SIZE,
+                () -> newBufferedReader(file, readBytes, charset));
+    }
+
+    private static Reader newReader(FileLocation file, ReadBytes readBytes, Charset charset) throws IOException {
+        if (readBytes.getMapped() != null) {
+            return new DecodingReader(readBytes.getMapped(),
+                    charset.equals(StandardCharsets.UTF_8) && readBytes.isAscii() ? StandardCharsets.ISO_8859_1 : charset);
+        }
+        if (readBytes.getBytes() == null) {
+            return LocalFiles.newBufferedReader(file.getFilePath(), charset);
+        }
+        return new InputStreamReader(
+                new ByteArrayInputStream(readBytes.getBytes(), 0, readBytes.getLength()), charset.newDecoder());
+    }
+
+    /**
+     * Map file larger than inMemorySize, validate all mapped bytes as UTF-8.
+     *
+     * @return null if file is small or can not be mapped
+     */
+    private static ReadBytes map(FileLocation file, int inMemorySize, Utf8Validator validator) throws IOException {
+        if (LocalFiles.size(file.getFilePath()) <= inMemorySize) {
+            return null;
+        }
+        ByteBuffer mapped = LocalFiles.map(file.getFilePath());
+        if (mapped == null) {
+            return null;
+        }
+        validator.update(mapped);
+        return new ReadBytes(null, 0, mapped, validator.isAscii());
+    }
+
+    /**
+     * Read bytes of small file into memory, validate all bytes as UTF-8.
+     */
+    private static ReadBytes read(InputStream inputStream, int inMemorySize, Utf8Validator validator) throws IOException {
+        byte[] bytes = new byte[BUFFER_SIZE];
+        int length = 0;
+        int read;
+        while ((read = inputStream.read(bytes, length, bytes.length - length)) >= 0) {
+            validator.update(bytes, length, length + read);
+            length += read;
+            if (length == bytes.length) {
+                if (length >= inMemorySize) {
+                    // large file, continue validation only
+                    while ((read = inputStream.read(bytes)) >= 0 && validator.update(bytes, 0, read)) {
+                        // validated in condition
+                    }
+                    return new ReadBytes(null, 0, null, false);
+                }
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+        }
+        return new ReadBytes(bytes, length, null, false);
+    }
+
+    @Value
+    private static class ReadBytes {
+        // null if file is too large to be kept in memory
+        byte[] bytes;
+        int length;
+        // null if file is not mapped
+        ByteBuffer mapped;
+        // mapped bytes are all ASCII
+        boolean ascii;
+    }
+
     @FunctionalInterface
     public interface BufferedReaderFunction<T> {
 
@@ -0,0 +1,30 @@
+package com.bt.code.egress.file;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Buffered reader which can open its text again from the start, decoded with the same charset,
+ * so a part of large text can be read twice instead of being kept in memory.
+ */
+public class ReopenableBufferedReader extends BufferedReader {
+    private final Reopener reopener;
+
+    public ReopenableBufferedReader(Reader in, int size, Reopener reopener) {
+        super(in, size);
+        this.reopener = reopener;
+    }
+
+    /**
+     * @return new reader at start of text, closed by caller
+     */
+    public BufferedReader reopen() throws IOException {
+        return reopener.reopen();
+    }
+
+    @FunctionalInterface
+    public interface Reopener {
+        BufferedReader reopen() throws IOException;
+    }
+}
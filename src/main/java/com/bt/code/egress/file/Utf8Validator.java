@@ -0,0 +1,104 @@
+package com.bt.code.egress.file;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental UTF-8 validation of bytes, fed with buffers as they are read, same rules as JDK decoder:
+ * no overlong forms, no surrogates, nothing above U+10FFFF. UTF-8 BOM is a valid sequence, kept in text.
+ * Optimization: runs of ASCII bytes are skipped in a tight loop, only multi-byte sequences are checked.
+ */
+public class Utf8Validator {
+    private static final int CHUNK_SIZE = 64 << 10;
+    // continuation bytes expected to complete current sequence
+    private int remaining;
+    // allowed range of next continuation byte, narrower after some lead bytes
+    private int lower = 0x80;
+    private int upper = 0xBF;
+    private boolean malformed;
+    private boolean ascii = true;
+
+    /**
+     * @return false if bytes are already known to be malformed
+     */
+    public boolean update(byte[] bytes, int from, int to) {
+        int i = from;
+        while (i < to && !malformed) {
+            if (remaining == 0) {
+                while (i < to && bytes[i] >= 0) {
+                    i++;
+                }
+                if (i < to) {
+                    startSequence(bytes[i++] & 0xFF);
+                }
+            } else {
+                int b = bytes[i++] & 0xFF;
+                if (b < lower || b > upper) {
+                    malformed = true;
+                } else {
+                    remaining--;
+                    lower = 0x80;
+                    upper = 0xBF;
+                }
+            }
+        }
+        return !malformed;
+    }
+
+    /**
+     * Validate bytes of buffer from its position to limit, buffer itself is not changed.
+     * Mapped buffer is copied to array by chunks, so bytes are checked by the same loop.
+     */
+    public boolean update(ByteBuffer buffer) {
+        ByteBuffer input = buffer.duplicate();
+        byte[] chunk = new byte[Math.min(CHUNK_SIZE, input.remaining())];
+        while (input.hasRemaining() && !malformed) {
+            int length = Math.min(chunk.length, input.remaining());
+            input.get(chunk, 0, length);
+            update(chunk, 0, length);
+        }
+        return !malformed;
+    }
+
+    /**
+     * @return true if all bytes so far are valid and no sequence is cut at the end
+     */
+    public boolean isValid() {
+        return !malformed && remaining == 0;
+    }
+
+    /**
+     * @return true if no multi-byte sequence was started, text is also valid Latin-1
+     */
+    public boolean isAscii() {
+        return ascii;
+    }
+
+    public static boolean isValid(byte[] bytes, int length) {
+        Utf8Validator validator = new Utf8Validator();
+        validator.update(bytes, 0, length);
+        return validator.isValid();
+    }
+
+    private void startSequence(int b) {
+        ascii = false;
+        if (b >= 0xC2 && b <= 0xDF) {
+            remaining = 1;
+        } else if (b >= 0xE0 && b <= 0xEF) {
+            remaining = 2;
+            if (b == 0xE0) {
+                lower = 0xA0;
+            } else if (b == 0xED) {
+                upper = 0x9F;
+            }
+        } else if (b >= 0xF0 && b <= 0xF4) {
+            remaining = 3;
+            if (b == 0xF0) {
+                lower = 0x90;
+            } else if (b == 0xF4) {
+                upper = 0x8F;
+            }
+        } else {
+            malformed = true;
+        }
+    }
+}
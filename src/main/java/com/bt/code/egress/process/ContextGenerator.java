@@ -4,5 +4,12 @@ import com.bt.code.egress.read.LineToken;
 
 @FunctionalInterface
 public interface ContextGenerator {
-    String getContext(LineToken lineToken);
+    /**
+     * @return context of line[startPos, endPos)
+     */
+    String getContext(String line, int startPos, int endPos);
+
+    default String getContext(LineToken lineToken) {
+        return getContext(lineToken.getLine(), lineToken.getStartPos(), lineToken.getEndPos());
+    }
 }
@@ -3,6 +3,7 @@ package com.bt.code.egress.process;
 import com.bt.code.egress.Config;
 import com.bt.code.egress.file.LocalFiles;
 import com.bt.code.egress.read.CsvFormatDetector;
+import com.bt.code.egress.read.FileInstructions;
 import com.bt.code.egress.read.InstructionMatcher;
 import com.bt.code.egress.read.LineLocation;
 import com.bt.code.egress.read.LineMatcher;
@@ -75,12 +76,12 @@ public class CsvFileReplacer implements FileReplacer {
     }
 
     @Override
-    public FileCompleted replace(FileLocation file, BufferedReader bufferedReader) throws IOException {
+    public FileCompleted replace(FileLocation file, FileInstructions fileInstructions, BufferedReader bufferedReader) throws IOException {
         Config.CsvFileConfig csvFileConfig = getCsvFileConfig(file.getFilename());
         if (csvFileConfig != null) {
-            return replaceCsv(file, bufferedReader, csvFileConfig);
+            return replaceCsv(file, fileInstructions, bufferedReader, csvFileConfig);
         } else {
-            return textFileReplacer.replace(file, bufferedReader);
+            return textFileReplacer.replace(file, fileInstructions, bufferedReader);
         }
     }
 
@@ -137,26 +138,37 @@ public class CsvFileReplacer implements FileReplacer {
 
     static class ColumnContextGenerators {
         private final ContextGenerator defaultContextGenerator;
-        private final List<ContextGenerator> contextGenerators;
+        private final List<String> headers;
+        // created on first use of column
+        private final ContextGenerator[] contextGenerators;
 
         ColumnContextGenerators(ContextGenerator defaultContextGenerator, Map<String, Integer> headerMap) {
             this.defaultContextGenerator = defaultContextGenerator;
             // later used by column index
-            this.contextGenerators = headerMap.keySet().stream()
-                    .map(header -> (ContextGenerator) (lt -> header + ":" + defaultContextGenerator.getContext(lt)))
-                    .collect(Collectors.toList());
+            this.headers = new ArrayList<>(headerMap.keySet());
+            this.contextGenerators = new ContextGenerator[headers.size()];
         }
 
         ContextGenerator getContextGenerator(int index) {
-            return index < contextGenerators.size() ? contextGenerators.get(index) : defaultContextGenerator;
+            if (index >= contextGenerators.length) {
+                return defaultContextGenerator;
+            }
+            if (contextGenerators[index] == null) {
+                String prefix = headers.get(index) + ":";
+                contextGenerators[index] = (line, startPos, endPos) ->
+                        prefix + defaultContextGenerator.getContext(line, startPos, endPos);
+            }
+            return contextGenerators[index];
         }
     }
 
-    public FileCompleted replaceCsv(FileLocation file, BufferedReader bufferedReader, Config.CsvFileConfig csvFileConfig) throws IOException {
+    public FileCompleted replaceCsv(FileLocation file, FileInstructions fileInstructions, BufferedReader bufferedReader,
+                                    Config.CsvFileConfig csvFileConfig) throws IOException {
         //CSV file with respective column configuration
         String reportedPath = file.toReportedPath();
         log.info("Process file as CSV: {}", reportedPath);
 
+        QuoteMode quoteMode = detectQuoteMode(bufferedReader);
         List<List<String>> originalRecords = new ArrayList<>();
         List<String> firstRunMatches = new ArrayList<>();
         CSVParser recordsParser = readCsvFormat.parse(bufferedReader);
@@ -173,17 +185,18 @@ public class CsvFileReplacer implements FileReplacer {
                 if (templateColumns.isGuarded(i)) {
                     String cell = record.get(i);
                     ContextGenerator columnContextGenerator = columnContextGenerators.getContextGenerator(i);
-                    List<LineReplacer.MatchParam> matchParams = lineReplacer.getMatchParams(cell, lineLocation, columnContextGenerator);
+                    List<LineReplacer.MatchParam> matchParams = lineReplacer.getMatchParams(cell, lineLocation, fileInstructions,
+                            columnContextGenerator);
                     matchParams.stream()
                             .filter(matchParam -> !Boolean.TRUE.equals(matchParam.getAllowed()))
                             .filter(matchParam -> matchParam.getConflict() == null)
                             .forEach(matchParam -> firstRunMatches.add(
-                                    columnContextGenerator.getContext(matchParam.getWordMatch().getLineToken())));
+                                    matchParam.getContext(columnContextGenerator)));
                 }
             }
         }
 
-        Boolean allowed = reportAndGetAllowed(reportedPath, csvFileConfig, firstRunMatches);
+        Boolean allowed = reportAndGetAllowed(fileInstructions, csvFileConfig, firstRunMatches);
 
         int lineNum = 0;
         List<List<String>> replacedRecords = new ArrayList<>();
@@ -206,7 +219,8 @@ public class CsvFileReplacer implements FileReplacer {
                         replace = mashed;
                     }
                 } else {
-                    replace = lineReplacer.replace(cell, lineLocation, columnContextGenerators.getContextGenerator(i));
+                    replace = lineReplacer.replace(cell, lineLocation, fileInstructions,
+                            columnContextGenerators.getContextGenerator(i));
                     if (dictionaryColumns.isGuarded(i) && cell.equals(replace)) {
                         dictionaryCandidates.put(cell.trim().toLowerCase(), "dictionary");
                     }
@@ -215,21 +229,22 @@ public class CsvFileReplacer implements FileReplacer {
             }
             replacedRecords.add(replacedRecord);
         }
+        lineReplacer.flushStats();
         Stats.csvFileWithColumnReplacements();
         List<String> headers = new ArrayList<>(headerMap.keySet());//todo?
         return new FileCompleted(file,
-                write(headers, originalRecords, file),
-                write(headers, replacedRecords, file));
+                write(headers, originalRecords, quoteMode),
+                write(headers, replacedRecords, quoteMode));
     }
 
-    private Boolean reportAndGetAllowed(String reportedPath, Config.CsvFileConfig csvFileConfig, List<String> firstRunMatches) {
+    private Boolean reportAndGetAllowed(FileInstructions fileInstructions, Config.CsvFileConfig csvFileConfig, List<String> firstRunMatches) {
         String joinedWord = "csv:" + csvFileConfig.getFilename() + ":" + String.join(",", csvFileConfig.getColumns().keySet());
         String joinedReplacement = String.join(",", csvFileConfig.getColumns().values());
         String joinedContext = getJoinedContext(firstRunMatches);
         LineToken joinedLineToken = new LineToken(joinedWord.toLowerCase(), 0, joinedWord.length());
-        LineLocation joinedLineLocation = new LineLocation(reportedPath, 0);
+        LineLocation joinedLineLocation = new LineLocation(fileInstructions.getFile(), 0);
 
-        Report.ReportLine instruction = instructionMatcher.getInstruction(joinedLineLocation, joinedLineToken, joinedContext);
+        Report.ReportLine instruction = fileInstructions.getInstruction(joinedLineLocation, joinedLineToken, joinedContext);
         Boolean allowed = instruction != null ? instruction.getAllow() : null;
 
         textMatchedListener.onMatched(new TextMatched(joinedLineLocation, joinedLineToken, allowed,
@@ -237,15 +252,13 @@ public class CsvFileReplacer implements FileReplacer {
         return allowed;
     }
 
-    List<String> write(List<String> headers, List<List<String>> records, FileLocation sourceFile) {
-        //Let's not use relativized paths here
-        FileLocation originalSourceFile = sourceFile.getOriginalLocation() != null ? sourceFile.getOriginalLocation() : sourceFile;
+    List<String> write(List<String> headers, List<List<String>> records, QuoteMode quoteMode) {
         StringWriter writer = new StringWriter();
         String[] header = headers.toArray(new String[0]);
         try (CSVPrinter printer = new CSVPrinter(
                 writer, writeCsvFormat
                 .withHeader(header)
-                .withQuoteMode(detectQuoteMode(originalSourceFile)))) {
+                .withQuoteMode(quoteMode))) {
             for (List<String> record : records) {
                 printer.printRecord(record);
             }
@@ -255,9 +268,9 @@ public class CsvFileReplacer implements FileReplacer {
         return Arrays.asList(writer.toString().split("[\\r\\n]+"));
     }
 
-    private QuoteMode detectQuoteMode(FileLocation file) throws IOException {
+    private QuoteMode detectQuoteMode(BufferedReader bufferedReader) throws IOException {
         try {
-            return csvFormatDetector.guessQuoteMode(file);
+            return csvFormatDetector.peekQuoteMode(bufferedReader);
         } catch (IOException ie) {
             throw ie;
         } catch (Throwable t) {
@@ -298,7 +311,7 @@ public class CsvFileReplacer implements FileReplacer {
                                     // is it from template or dictionary column
                                     entry.getValue(),
                                     // tricky: restore config is used during replace
-                                    !restoreLineMatcher.getMatches(text).isEmpty() ? "Ignore: restorable"
+                                    restoreLineMatcher.hasMatches(text) ? "Ignore: restorable"
                                             : text.length() < 3 ? "Ignore: too short" : null};
                         })
                         .sorted(Comparator.comparing((String[] r) -> r[3], Comparator.comparingInt(s -> s == null ? 1 : 0))
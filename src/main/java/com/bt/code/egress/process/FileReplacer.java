@@ -1,5 +1,6 @@
 package com.bt.code.egress.process;
 
+import com.bt.code.egress.read.FileInstructions;
 import com.bt.code.egress.write.FileCompleted;
 
 import java.io.BufferedReader;
@@ -7,5 +8,8 @@ import java.io.IOException;
 
 @FunctionalInterface
 public interface FileReplacer {
-    FileCompleted replace(FileLocation file, BufferedReader bufferedReader) throws IOException;
+    /**
+     * @param fileInstructions instructions of file, resolved once when processing of file starts
+     */
+    FileCompleted replace(FileLocation file, FileInstructions fileInstructions, BufferedReader bufferedReader) throws IOException;
 }
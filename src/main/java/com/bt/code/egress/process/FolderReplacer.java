@@ -1,7 +1,9 @@
 package com.bt.code.egress.process;
 
+import com.bt.code.egress.file.ContentSniffer;
 import com.bt.code.egress.file.LocalFiles;
 import com.bt.code.egress.file.ReaderCharsetSelector;
+import com.bt.code.egress.read.FileInstructions;
 import com.bt.code.egress.read.FilePathMatcher;
 import com.bt.code.egress.read.LineLocation;
 import com.bt.code.egress.read.LineToken;
@@ -12,7 +14,6 @@ import com.bt.code.egress.write.ZipCompleted;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
@@ -25,7 +26,6 @@ import java.util.stream.Stream;
 public class FolderReplacer {
     private final FileReplacer fileReplacer;
     private final FilePathMatcher filePathMatcher;
-    private final FilePathMatcher allowFilePathMatcher;
     private final LineReplacer lineReplacer;
     private final ContextGenerator contextGenerator;
     private final TextMatched.Listener textMatchedListener;
@@ -49,11 +49,7 @@ public class FolderReplacer {
                 LineLocation lineLocation = new LineLocation(reportedPath, 0);
                 if (LocalFiles.isDirectory(file.getFilePath())) {
                     if (filePathMatcher.match(name + "/")) {
-                        List<LineReplacer.MatchParam> fileNameMatches = lineReplacer.getMatchParams(
-                                relativeFile.getFilename(), lineLocation, contextGenerator);
-                        for (LineReplacer.MatchParam fileNameMatch : fileNameMatches) {
-                            FileErrors.addError(reportedPath, "Guarded word: " + fileNameMatch.getWordMatch().getReason());
-                        }
+                        checkFileName(relativeFile, lineLocation, lineReplacer.forFile(reportedPath));
                         replace(file, rootFolder, submitter);
                     } else {
                         log.info("Ignore folder: {}", relativeFile);
@@ -66,43 +62,74 @@ public class FolderReplacer {
                     Stats.fileIgnored();
                     return;
                 }
-                if (allowFilePathMatcher.match(name)) {
-                    log.info("Ignore file due to previous failure: {}", relativeFile);
-                    Stats.fileFailed();
-                    textMatchedListener.onMatched(new TextMatched(lineLocation,
-                            new LineToken(""), true, "", "", "Ignore file due to previous failure"));
-                    return;
-                }
 
-                List<LineReplacer.MatchParam> fileNameMatches = lineReplacer.getMatchParams(
-                        relativeFile.getFilename(), lineLocation, contextGenerator);
-                for (LineReplacer.MatchParam fileNameMatch : fileNameMatches) {
-                    FileErrors.addError(reportedPath, "Guarded word: " + fileNameMatch.getWordMatch().getReason());
-                }
+                submitter.accept(relativeFile.toString(), () -> processFile(file, relativeFile, lineLocation));
+            });
+        }
+    }
 
-                if (isZipFile(file.getFilePath())) {
-                    submitter.accept(relativeFile.toString(), () ->
-                            processZip(file.getFilePath(), relativeFile.getFilePath()));
-                } else {
-                    submitter.accept(relativeFile.toString(), () -> {
-                        try {
-                            ReaderCharsetSelector.BufferedReaderFunction<FileCompleted> replacementFunction =
-                                    bufferedReader -> fileReplacer.replace(relativeFile, bufferedReader);
-
-                            FileCompleted fileCompleted = ReaderCharsetSelector.doWithBufferedReader(
-                                    file, replacementFunction, StandardCharsets.ISO_8859_1);
-
-                            fileCompletedListener.onFileCompleted(fileCompleted);
-                        } catch (Exception e) {
-                            log.error("Failed to process file {}", relativeFile, e);
-                            FileErrors.addError(reportedPath, "Failed to process file: " + e);
-                            Stats.fileFailed();
-                            textMatchedListener.onMatched(new TextMatched(lineLocation,
-                                    new LineToken(""), null, "", "", "FAILED to process file " + relativeFile));
-                        }
-                    });
+    private void checkFileName(FileLocation relativeFile, LineLocation lineLocation, FileInstructions fileInstructions) {
+        List<LineReplacer.MatchParam> fileNameMatches = lineReplacer.getMatchParams(
+                relativeFile.getFilename(), lineLocation, fileInstructions, contextGenerator);
+        for (LineReplacer.MatchParam fileNameMatch : fileNameMatches) {
+            FileErrors.addError(lineLocation.getFile(), "Guarded word: " + fileNameMatch.getWordMatch().getReason());
+        }
+        lineReplacer.flushStats();
+    }
+
+    /**
+     * Route file by its header: zip is scanned as folder, other binary is skipped, text is replaced.
+     * Header is read from the same stream as text, so file is opened once.
+     * Instructions of file are resolved here, in task of file, not by thread listing the folder.
+     */
+    private void processFile(FileLocation file, FileLocation relativeFile, LineLocation lineLocation) {
+        String reportedPath = relativeFile.toReportedPath();
+        FileInstructions fileInstructions = lineReplacer.forFile(reportedPath);
+        if (fileInstructions.isAllowedFile()) {
+            log.info("Ignore file due to previous failure: {}", relativeFile);
+            Stats.fileFailed();
+            textMatchedListener.onMatched(new TextMatched(lineLocation,
+                    new LineToken(""), true, "", "", "Ignore file due to previous failure"));
+            return;
+        }
+        checkFileName(relativeFile, lineLocation, fileInstructions);
+
+        ContentSniffer.Content content;
+        try {
+            FileCompleted fileCompleted = null;
+            try (InputStream inputStream = ContentSniffer.open(file.getFilePath())) {
+                content = ContentSniffer.sniff(inputStream);
+                if (content.getType() == ContentSniffer.ContentType.TEXT) {
+                    ReaderCharsetSelector.BufferedReaderFunction<FileCompleted> replacementFunction =
+                            bufferedReader -> fileReplacer.replace(relativeFile, fileInstructions, bufferedReader);
+
+                    fileCompleted = ReaderCharsetSelector.doWithBufferedReader(
+                            file, inputStream, content, replacementFunction, StandardCharsets.ISO_8859_1);
+                    if (content.getCharset() != null && !content.getCharset().equals(StandardCharsets.UTF_8)) {
+                        // text decoded by BOM is written back in the same charset
+                        fileCompleted = fileCompleted.withCharset(content.getCharset());
+                    }
                 }
-            });
+            }
+            if (fileCompleted != null) {
+                fileCompletedListener.onFileCompleted(fileCompleted);
+                return;
+            }
+        } catch (Exception e) {
+            log.error("Failed to process file {}", relativeFile, e);
+            FileErrors.addError(reportedPath, "Failed to process file: " + e);
+            Stats.fileFailed();
+            textMatchedListener.onMatched(new TextMatched(lineLocation,
+                    new LineToken(""), null, "", "", "FAILED to process file " + relativeFile));
+            return;
+        }
+
+        if (content.getType() == ContentSniffer.ContentType.ZIP) {
+            processZip(file.getFilePath(), relativeFile.getFilePath());
+        } else {
+            log.info("Skip binary file ({}): {}", content.getReason(), relativeFile);
+            Stats.fileBinary();
+            FileErrors.addError(reportedPath, "Binary file skipped: " + content.getReason());
         }
     }
 
@@ -123,18 +150,4 @@ public class FolderReplacer {
 
         log.info("ZIP file: {} processed", file);
     }
-
-    static boolean isZipFile(Path file) {
-        byte[] bytes = new byte[4];
-        try (InputStream fIn = LocalFiles.newInputStream(file)) {
-            if (fIn.read(bytes) != 4) {
-                return false;
-            }
-            final int header = bytes[0] + (bytes[1] << 8) + (bytes[2] << 16) + (bytes[3] << 24);
-            return 0x04034b50 == header;
-        } catch (IOException e) {
-            log.debug("Failed to check isZipFile: {}", file, e);
-        }
-        return false;
-    }
-}
\ No newline at end of file
+}
@@ -1,15 +1,21 @@
 package com.bt.code.egress.process;
 
+import com.bt.code.egress.read.FileInstructions;
 import com.bt.code.egress.read.InstructionMatcher;
+import com.bt.code.egress.read.LineBuffer;
 import com.bt.code.egress.read.LineGuardIgnoreMatcher;
 import com.bt.code.egress.read.LineLocation;
 import com.bt.code.egress.read.LineToken;
+import com.bt.code.egress.read.MatchBuffer;
 import com.bt.code.egress.read.WordMatch;
 import com.bt.code.egress.report.Report;
 import com.bt.code.egress.report.Stats;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 
@@ -18,24 +24,39 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
 @Slf4j
 public class LineReplacer {
+    // builder grown over this capacity is dropped after the line
+    private static final int MAX_KEPT_LINE_BUILDER = 1 << 16;
 
     private final LineGuardIgnoreMatcher lineMatcher;
     private final TextMatched.Listener textMatchedListener;
     private final TextMatched.Listener restoreInstructionDraftListener;
     private final InstructionMatcher instructionMatcher;
     private final WordReplacementGenerator wordReplacementGenerator;
+    // reused for every line of a thread, matches become objects only if they remain after ignore
+    private final ThreadLocal<MatchBuffer> matchBuffers = ThreadLocal.withInitial(MatchBuffer::new);
+    // reused for every replaced line of a thread
+    private final ThreadLocal<StringBuilder> lineBuilders = ThreadLocal.withInitial(StringBuilder::new);
 
     @Data
-    @AllArgsConstructor
     static class MatchParam {
-        WordMatch wordMatch;
+        final WordMatch wordMatch;
         Report.ReportLine instruction;
         WordMatch conflict;
+        // computed on first use, most matches have no instruction rows to compare context with
+        @Getter(AccessLevel.NONE)
+        @Setter(AccessLevel.NONE)
+        String context;
+
+        String getContext(ContextGenerator contextGenerator) {
+            if (context == null) {
+                context = contextGenerator.getContext(wordMatch.getLineToken());
+            }
+            return context;
+        }
 
         Boolean getAllowed() {
             return instruction != null ? instruction.getAllow() : null;
@@ -50,6 +71,9 @@ public class LineReplacer {
         }
     }
 
+    /**
+     * Replacement at position in replaced line, known from length of built line, so line is not searched again.
+     */
     @Data
     @AllArgsConstructor
     static class BackMatch {
@@ -62,28 +86,91 @@ public class LineReplacer {
         }
     }
 
-    public List<MatchParam> getMatchParams(String line, LineLocation lineLocation, ContextGenerator contextGenerator) {
-        List<WordMatch> matches = lineMatcher.getMatches(line);
+    /**
+     * @param file reported path of file
+     * @return instructions to use for all lines of file, taken once when processing of file starts
+     */
+    public FileInstructions forFile(String file) {
+        return instructionMatcher.forFile(file);
+    }
+
+    public List<MatchParam> getMatchParams(String line, LineLocation lineLocation, FileInstructions fileInstructions,
+                                           ContextGenerator contextGenerator) {
+        return getMatchParams(getMatches(line), lineLocation, fileInstructions, contextGenerator);
+    }
+
+    private List<WordMatch> getMatches(String line) {
+        MatchBuffer matches = matchBuffers.get();
+        matches.clear();
+        lineMatcher.findMatches(line, 0, matches);
+        return matches.toWordMatches(0, matches.size(), line);
+    }
+
+    List<MatchParam> getMatchParams(List<WordMatch> matches, LineLocation lineLocation, FileInstructions fileInstructions,
+                                    ContextGenerator contextGenerator) {
         if (matches.isEmpty()) {
             return Collections.emptyList();
         }
 
-        List<MatchParam> matchParams = matches.stream()
-                // instructionMatcher can return null
-                .map(wm -> new MatchParam(wm,
-                        instructionMatcher.getInstruction(lineLocation, wm.getLineToken(), contextGenerator.getContext(wm.getLineToken())),
-                        null))
-                .collect(Collectors.toList());
+        List<MatchParam> matchParams = new ArrayList<>(matches.size());
+        for (WordMatch wordMatch : matches) {
+            MatchParam matchParam = new MatchParam(wordMatch);
+            // fileInstructions can return null
+            matchParam.setInstruction(fileInstructions.getInstruction(lineLocation, wordMatch.getLineToken(),
+                    () -> matchParam.getContext(contextGenerator)));
+            matchParams.add(matchParam);
+        }
 
         markConflicts(matchParams);
         return matchParams;
     }
 
-    public String replace(String line, LineLocation lineLocation, ContextGenerator contextGenerator) {
+    /**
+     * @param fileInstructions for file of lineLocation
+     */
+    public String replace(String line, LineLocation lineLocation, FileInstructions fileInstructions, ContextGenerator contextGenerator) {
         if (line.length() == 0) {
             return line;
         }
-        List<MatchParam> matchParams = getMatchParams(line, lineLocation, contextGenerator);
+        return replace(line, getMatches(line), lineLocation, fileInstructions, contextGenerator);
+    }
+
+    /**
+     * Add stats counted by matching of single lines on this thread, called once per window or file.
+     */
+    public void flushStats() {
+        matchBuffers.get().flushSkippedLines();
+    }
+
+    public boolean mayMatch(LineBuffer buffer) {
+        return lineMatcher.mayMatch(buffer);
+    }
+
+    /**
+     * Replace all lines of buffer, matches are searched in the whole buffer at once.
+     *
+     * @param firstLineNum number of the first line of buffer in file, starting from 1
+     */
+    public List<String> replace(LineBuffer buffer, FileInstructions fileInstructions, int firstLineNum, ContextGenerator contextGenerator) {
+        MatchBuffer matches = matchBuffers.get();
+        matches.clear();
+        lineMatcher.findMatches(buffer, matches);
+        List<String> replacedLines = new ArrayList<>(buffer.getLines());
+        // matches are grouped by line, only lines with matches are processed
+        for (int from = 0; from < matches.size(); ) {
+            int to = matches.getLineEnd(from);
+            int lineIndex = matches.getLine(from);
+            String line = buffer.getLine(lineIndex);
+            replacedLines.set(lineIndex, replace(line, matches.toWordMatches(from, to, line),
+                    new LineLocation(fileInstructions.getFile(), firstLineNum + lineIndex), fileInstructions, contextGenerator));
+            from = to;
+        }
+        return replacedLines;
+    }
+
+    private String replace(String line, List<WordMatch> matches, LineLocation lineLocation, FileInstructions fileInstructions,
+                           ContextGenerator contextGenerator) {
+        List<MatchParam> matchParams = getMatchParams(matches, lineLocation, fileInstructions, contextGenerator);
         if (matchParams.isEmpty()) {
             return line;
         }
@@ -91,7 +178,8 @@ public class LineReplacer {
         // sort by position in line
         matchParams.sort(Comparator.comparing(m -> m.getWordMatch().getLineToken().getStartPos()));
 
-        String processed = null;
+        // replaced line is appended slice by slice, null until first replacement
+        StringBuilder processed = null;
         int processedPos = 0;
         List<BackMatch> backMatches = new ArrayList<>();
         for (MatchParam matchParam : matchParams) {
@@ -125,23 +213,35 @@ public class LineReplacer {
                 }
                 continue;
             } else {
-                backMatches.add(new BackMatch(wordMatch, replacement, (processed == null ? 0 : processed.length()) + (lineToken.getStartPos() - processedPos)));
-                String withBefore = line.substring(processedPos, lineToken.getStartPos()) + replacement;
-                processed = processed == null ? withBefore : processed + withBefore;
+                if (processed == null) {
+                    processed = lineBuilders.get();
+                    processed.setLength(0);
+                }
+                processed.append(line, processedPos, lineToken.getStartPos());
+                backMatches.add(new BackMatch(wordMatch, replacement, processed.length()));
+                processed.append(replacement);
                 processedPos = lineToken.getEndPos();
                 Stats.wordReplaced();
             }
 
             textMatchedListener.onMatched(new TextMatched(lineLocation, lineToken, matchParam.getAllowed(),
-                    contextGenerator.getContext(lineToken), replacement, comment));
+                    matchParam.getContext(contextGenerator), replacement, comment));
+        }
+        String replacedLine = line;
+        if (processed != null) {
+            replacedLine = processed.append(line, processedPos, line.length()).toString();
+            if (processed.capacity() > MAX_KEPT_LINE_BUILDER) {
+                // do not keep buffer of a huge line for rest of thread life
+                lineBuilders.remove();
+            }
         }
-        String replacedLine = processed == null ? line : processed + line.substring(processedPos);
         if (restoreInstructionDraftListener != null) {
             for (BackMatch backMatch : backMatches) {
                 WordMatch wordMatch = backMatch.getWordMatch();
-                LineToken replacedToken = new LineToken(replacedLine, backMatch.getStartPos(), backMatch.getEndPos());
-                restoreInstructionDraftListener.onMatched(new TextMatched(lineLocation, replacedToken, null,
-                        contextGenerator.getContext(replacedToken), wordMatch.getLineToken().getWord(), "Restore " + wordMatch.getReason()));
+                restoreInstructionDraftListener.onMatched(new TextMatched(lineLocation,
+                        backMatch.getReplacement().toLowerCase(), backMatch.getStartPos(), backMatch.getEndPos(), null,
+                        contextGenerator.getContext(replacedLine, backMatch.getStartPos(), backMatch.getEndPos()),
+                        wordMatch.getLineToken().getWord(), "Restore " + wordMatch.getReason()));
             }
         }
         Stats.wordsMatched(matchParams.size());
@@ -150,6 +250,7 @@ public class LineReplacer {
 
     /**
      * Mark overlapped matches as conflicts, modify list inplace.
+     * Optimization: overlaps are found by {@link OverlapIndex}, O(n log n) for line with many matches.
      */
     static void markConflicts(List<MatchParam> matchParams) {
         if (matchParams.size() <= 1) {
@@ -162,15 +263,24 @@ public class LineReplacer {
                 .thenComparing(mp -> StringUtils.isBlank(mp.getWordMatch().getTemplate()) ? 2 :
                         mp.getWordMatch().getTemplate().contains("{") ? 1 : 0));
 
-        // temp store of included matches
+        // conflict is the first included match, which overlaps
+        int[] starts = new int[matchParams.size()];
+        int[] ends = new int[matchParams.size()];
+        for (int i = 0; i < matchParams.size(); i++) {
+            LineToken lineToken = matchParams.get(i).getWordMatch().getLineToken();
+            starts[i] = lineToken.getStartPos();
+            ends[i] = lineToken.getEndPos();
+        }
+        OverlapIndex included = new OverlapIndex(starts, ends);
         List<MatchParam> toReplace = new ArrayList<>();
-        matchParams.stream()
-                .peek(m1 -> m1.setConflict(toReplace.stream()
-                        .filter(m2 -> !m2.getWordMatch().isCompatible(m1.getWordMatch()))
-                        .findFirst()
-                        .map(MatchParam::getWordMatch)
-                        .orElse(null)))
-                .filter(m1 -> !Boolean.TRUE.equals(m1.getAllowed()))
-                .forEach(toReplace::add);
+        for (int i = 0; i < matchParams.size(); i++) {
+            MatchParam m1 = matchParams.get(i);
+            int conflict = included.findFirstOverlap(i);
+            m1.setConflict(conflict >= 0 ? toReplace.get(conflict).getWordMatch() : null);
+            if (!Boolean.TRUE.equals(m1.getAllowed())) {
+                included.add(i, toReplace.size());
+                toReplace.add(m1);
+            }
+        }
     }
 }
@@ -0,0 +1,122 @@
+package com.bt.code.egress.process;
+
+import java.util.Arrays;
+
+/**
+ * Intervals [start, end) of matches of one line, added one by one with rank.
+ * Finds the lowest rank of added intervals, which overlap given one, in O(log n).
+ * Overlapping interval either starts inside given one, found by range minimum over intervals sorted by start,
+ * or covers its start, found by minimum along path in tree of start points.
+ */
+class OverlapIndex {
+    private static final int NONE = Integer.MAX_VALUE;
+
+    private final int[] starts;
+    private final int[] ends;
+    // start * 2 + 1 for non-empty interval, sorted
+    private final long[] startKeys;
+    // leaf of interval in startKeys order
+    private final int[] leaves;
+    // min rank of added intervals by leaf, bottom-up segment tree
+    private final int[] startTree;
+    // distinct starts, query points
+    private final int[] points;
+    // min rank of added intervals covering point, ranges are kept in canonical nodes
+    private final int[] pointTree;
+
+    OverlapIndex(int[] starts, int[] ends) {
+        int n = starts.length;
+        this.starts = starts;
+        this.ends = ends;
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = startKey(starts[i], ends[i] > starts[i]) << 32 | i;
+        }
+        Arrays.sort(keys);
+        this.startKeys = new long[n];
+        this.leaves = new int[n];
+        for (int k = 0; k < n; k++) {
+            startKeys[k] = keys[k] >>> 32;
+            leaves[(int) keys[k]] = k;
+        }
+        this.startTree = new int[2 * n];
+        Arrays.fill(startTree, NONE);
+
+        this.points = Arrays.stream(starts).sorted().distinct().toArray();
+        this.pointTree = new int[2 * points.length];
+        Arrays.fill(pointTree, NONE);
+    }
+
+    private static long startKey(int start, boolean nonEmpty) {
+        return (long) start * 2 + (nonEmpty ? 1 : 0);
+    }
+
+    void add(int interval, int rank) {
+        int n = leaves.length;
+        for (int node = leaves[interval] + n; node > 0; node >>= 1) {
+            startTree[node] = Math.min(startTree[node], rank);
+        }
+        // points strictly inside interval
+        int from = upperBound(points, starts[interval]);
+        int to = lowerBound(points, ends[interval]);
+        for (int l = from + points.length, r = to + points.length; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1) {
+                pointTree[l] = Math.min(pointTree[l], rank);
+                l++;
+            }
+            if ((r & 1) == 1) {
+                r--;
+                pointTree[r] = Math.min(pointTree[r], rank);
+            }
+        }
+    }
+
+    /**
+     * @return lowest rank of added intervals overlapping interval, -1 if none
+     */
+    int findFirstOverlap(int interval) {
+        int start = starts[interval];
+        int n = leaves.length;
+        int min = NONE;
+        // started inside: empty interval at start does not overlap
+        int from = lowerBound(startKeys, startKey(start, true));
+        int to = lowerBound(startKeys, startKey(ends[interval], false));
+        for (int l = from + n, r = to + n; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1) {
+                min = Math.min(min, startTree[l++]);
+            }
+            if ((r & 1) == 1) {
+                min = Math.min(min, startTree[--r]);
+            }
+        }
+        // started before and covers start
+        for (int node = Arrays.binarySearch(points, start) + points.length; node > 0; node >>= 1) {
+            min = Math.min(min, pointTree[node]);
+        }
+        return min == NONE ? -1 : min;
+    }
+
+    private static int lowerBound(long[] values, long value) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int lowerBound(int[] values, int value) {
+        int index = Arrays.binarySearch(values, value);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static int upperBound(int[] values, int value) {
+        int index = Arrays.binarySearch(values, value);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+}
@@ -1,37 +1,210 @@
 package com.bt.code.egress.process;
 
 import com.bt.code.egress.file.KeepEolFiles;
+import com.bt.code.egress.file.LocalFiles;
+import com.bt.code.egress.file.ReopenableBufferedReader;
+import com.bt.code.egress.read.FileInstructions;
+import com.bt.code.egress.read.LineBuffer;
 import com.bt.code.egress.read.LineLocation;
+import com.bt.code.egress.report.Stats;
 import com.bt.code.egress.write.FileCompleted;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @RequiredArgsConstructor
 @Slf4j
 public class TextFileReplacer implements FileReplacer {
+    private static final int CHUNK_SIZE = 1 << 20;
+
     private final LineReplacer lineReplacer;
     private final ContextGenerator contextGenerator;
+    // scan whole file as one buffer instead of line by line
+    private final boolean wholeFile;
+    // file with more chars is split into chunks of lines processed in parallel, 0 - never
+    private final long parallelFileSize;
+    // file with more chars is streamed to temp file in windows of lines of this size, 0 - never
+    private final long streamFileSize;
+
+    public TextFileReplacer(LineReplacer lineReplacer, ContextGenerator contextGenerator) {
+        this(lineReplacer, contextGenerator, false, 0, 0);
+    }
 
     @Override
-    public FileCompleted replace(FileLocation file, BufferedReader bufferedReader) throws IOException {
+    public FileCompleted replace(FileLocation file, FileInstructions fileInstructions, BufferedReader bufferedReader) throws IOException {
         log.info("Process file as plain text: {}", file);
+        KeepEolFiles.LineIterator lines = KeepEolFiles.lines(bufferedReader);
+        List<String> lineEnds = new ArrayList<>();
+        List<String> originalLines = readWindow(lines, lineEnds);
+        if (lines.hasNext()) {
+            return replaceStreamed(file, fileInstructions, bufferedReader, originalLines, lineEnds, lines);
+        }
+        List<String> replacedLines = replaceWindow(file, fileInstructions, originalLines, 1);
+        if (replacedLines == originalLines) {
+            Stats.fileClean();
+        }
+        return new FileCompleted(file, originalLines, replacedLines, lineEnds);
+    }
+
+    /**
+     * @param lineEnds filled with original terminators of window lines
+     * @return next lines up to streamFileSize chars, all lines if file is not streamed
+     */
+    private List<String> readWindow(KeepEolFiles.LineIterator lines, List<String> lineEnds) {
+        List<String> window = new ArrayList<>();
+        long size = 0;
+        while (lines.hasNext() && (streamFileSize <= 0 || size < streamFileSize)) {
+            String line = lines.next();
+            window.add(line);
+            lineEnds.add(lines.getLineEnd());
+            size += line.length();
+        }
+        return window;
+    }
+
+    /**
+     * Replace window by window and write replaced lines to temp file, so only one window is kept in memory.
+     * Temp file is created at first changed window, clean lines before it are copied from reopened text,
+     * so clean file is not written at all. Temp file is moved to output or deleted by listener of completed file.
+     */
+    private FileCompleted replaceStreamed(FileLocation file, FileInstructions fileInstructions, BufferedReader bufferedReader,
+                                          List<String> firstWindow, List<String> lineEnds,
+                                          KeepEolFiles.LineIterator lines) throws IOException {
+        log.info("Process file streamed to temp file: {}", file);
+        Path replacedFile = null;
+        BufferedWriter writer = null;
+        boolean clean = true;
+        boolean changed = false;
+        long charsRead = 0;
+        long linesRead = 0;
+        try {
+            if (!(bufferedReader instanceof ReopenableBufferedReader)) {
+                replacedFile = LocalFiles.createTempFile("egress-", ".tmp");
+                writer = LocalFiles.newBufferedWriter(replacedFile);
+            }
+            List<String> window = firstWindow;
+            while (!window.isEmpty()) {
+                List<String> replaced = replaceWindow(file, fileInstructions, window, (int) linesRead + 1);
+                if (replaced != window) {
+                    clean = false;
+                    changed = changed || !window.equals(replaced);
+                    if (writer == null && changed) {
+                        replacedFile = LocalFiles.createTempFile("egress-", ".tmp");
+                        writer = LocalFiles.newBufferedWriter(replacedFile);
+                        copyLines((ReopenableBufferedReader) bufferedReader, writer, linesRead);
+                    }
+                }
+                if (writer != null) {
+                    KeepEolFiles.write(writer, replaced, lineEnds);
+                }
+                linesRead += window.size();
+                charsRead += window.stream().mapToLong(String::length).sum();
+                lineEnds.clear();
+                window = readWindow(lines, lineEnds);
+            }
+            if (writer != null) {
+                writer.close();
+            }
+        } catch (IOException | RuntimeException e) {
+            if (writer != null) {
+                writer.close();
+            }
+            if (replacedFile != null) {
+                LocalFiles.deleteIfExists(replacedFile);
+            }
+            throw e;
+        }
+        if (clean) {
+            Stats.fileClean();
+        }
+        return FileCompleted.streamed(file, replacedFile, changed, charsRead, linesRead);
+    }
 
-        int lineNum = 0;
-        List<String> originalLines = new ArrayList<>();
-        List<String> replacedLines = new ArrayList<>();
-        for (Iterator<String> i = KeepEolFiles.read(bufferedReader).iterator(); i.hasNext(); ) {
-            String line = i.next();
-            String replace = lineReplacer.replace(line, new LineLocation(file.toReportedPath(), ++lineNum), contextGenerator);
-            originalLines.add(line);
-            replacedLines.add(replace);
+    /**
+     * Copy first lines of text, which are not changed, with their original terminators.
+     */
+    private static void copyLines(ReopenableBufferedReader bufferedReader, BufferedWriter writer, long count) throws IOException {
+        try (BufferedReader reopened = bufferedReader.reopen()) {
+            KeepEolFiles.LineIterator lines = KeepEolFiles.lines(reopened);
+            for (long i = 0; i < count; i++) {
+                writer.append(lines.next()).append(lines.getLineEnd());
+            }
         }
-        return new FileCompleted(file, originalLines, replacedLines);
     }
 
+    /**
+     * @return same lines if no line can match
+     */
+    private List<String> replaceWindow(FileLocation file, FileInstructions fileInstructions, List<String> lines, int firstLineNum) {
+        long size = lines.stream().mapToLong(String::length).sum();
+        return parallelFileSize > 0 && size >= parallelFileSize
+                ? replaceParallel(file, fileInstructions, lines, firstLineNum)
+                : replace(fileInstructions, lines, firstLineNum);
+    }
+
+    /**
+     * @return same lines if no line can match
+     */
+    private List<String> replace(FileInstructions fileInstructions, List<String> lines, int firstLineNum) {
+        LineBuffer buffer = new LineBuffer(lines);
+        // most files have no guarded words, prove it in one pass over the whole file
+        if (!lineReplacer.mayMatch(buffer)) {
+            return lines;
+        }
+
+        if (wholeFile) {
+            return lineReplacer.replace(buffer, fileInstructions, firstLineNum, contextGenerator);
+        }
+        List<String> replacedLines = new ArrayList<>(lines.size());
+        int lineNum = firstLineNum;
+        for (String line : lines) {
+            replacedLines.add(lineReplacer.replace(line, new LineLocation(fileInstructions.getFile(), lineNum++),
+                    fileInstructions, contextGenerator));
+        }
+        lineReplacer.flushStats();
+        return replacedLines;
+    }
+
+    /**
+     * Split lines into chunks and process them on fork-join pool, so large file does not keep single thread busy.
+     *
+     * @return same lines if no line can match
+     */
+    private List<String> replaceParallel(FileLocation file, FileInstructions fileInstructions, List<String> lines, int firstLineNum) {
+        long maxChunkSize = Math.min(CHUNK_SIZE, parallelFileSize);
+        List<Integer> chunkStarts = new ArrayList<>();
+        long chunkSize = maxChunkSize;
+        for (int i = 0; i < lines.size(); i++) {
+            if (chunkSize >= maxChunkSize) {
+                chunkStarts.add(i);
+                chunkSize = 0;
+            }
+            chunkSize += lines.get(i).length() + 1;
+        }
+        chunkStarts.add(lines.size());
+        log.info("Process file in {} parallel chunks: {}", chunkStarts.size() - 1, file);
+
+        List<List<String>> chunks = IntStream.range(0, chunkStarts.size() - 1)
+                .mapToObj(c -> lines.subList(chunkStarts.get(c), chunkStarts.get(c + 1)))
+                .collect(Collectors.toList());
+        List<List<String>> replacedChunks = IntStream.range(0, chunks.size())
+                .parallel()
+                .mapToObj(c -> replace(fileInstructions, chunks.get(c), firstLineNum + chunkStarts.get(c)))
+                .collect(Collectors.toList());
+        // replace returns the same chunk if it cannot match
+        if (IntStream.range(0, chunks.size()).allMatch(c -> replacedChunks.get(c) == chunks.get(c))) {
+            return lines;
+        }
+        List<String> replacedLines = new ArrayList<>(lines.size());
+        replacedChunks.forEach(replacedLines::addAll);
+        return replacedLines;
+    }
 }
@@ -2,17 +2,28 @@ package com.bt.code.egress.process;
 
 import com.bt.code.egress.read.LineLocation;
 import com.bt.code.egress.read.LineToken;
+import lombok.AllArgsConstructor;
 import lombok.Value;
 
 @Value
+@AllArgsConstructor
 public class TextMatched {
     LineLocation lineLocation;
-    LineToken lineToken;
+    // matched word in lower case
+    String text;
+    int startPos;
+    int endPos;
     Boolean allowed;
     String context;
     String replacement;
     String comment;
 
+    public TextMatched(LineLocation lineLocation, LineToken lineToken, Boolean allowed, String context,
+                       String replacement, String comment) {
+        this(lineLocation, lineToken.getWordLowerCase(), lineToken.getStartPos(), lineToken.getEndPos(),
+                allowed, context, replacement, comment);
+    }
+
     @FunctionalInterface
     public interface Listener {
         void onMatched(TextMatched textMatched);
@@ -22,8 +33,8 @@ public class TextMatched {
     public String toString() {
         return "TextMatched{file=" + lineLocation.getFile() +
                 "#" + lineLocation.getLineNum() +
-                ":" + lineToken.getStartPos() +
-                "-" + lineToken.getEndPos() +
+                ":" + startPos +
+                "-" + endPos +
                 ", allowed=" + allowed +
                 ", context=" + context +
                 ", replacement='" + replacement + '\'' +
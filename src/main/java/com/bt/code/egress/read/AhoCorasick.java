@@ -0,0 +1,166 @@
+package com.bt.code.egress.read;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton, finds all occurrences of all keywords in one pass over text.
+ * Trie is kept in flat arrays, children of node are sorted by char and looked up by binary search.
+ * Usage: state = next(state, c) for each char, then iterate matches ending at this char:
+ * for (int node = match(state); node >= 0; node = nextMatch(node)) keyword(node).
+ */
+public class AhoCorasick {
+    public static final int ROOT = 0;
+    private static final int ASCII = 128;
+
+    private final int[] keywordLengths;
+    // children of node i are childChars/childNodes[childStart[i]..childStart[i+1])
+    private final int[] childStart;
+    private final char[] childChars;
+    private final int[] childNodes;
+    private final int[] rootAscii;
+    private final int[] fail;
+    // keyword ending in node, -1 if none
+    private final int[] keywords;
+    // closest node with keyword by fail links, -1 if none
+    private final int[] outputs;
+
+    public AhoCorasick(List<String> keywords) {
+        this.keywordLengths = keywords.stream().mapToInt(String::length).toArray();
+
+        // build trie with children as linked lists
+        int capacity = Math.max(16, keywords.stream().mapToInt(String::length).sum() + 1);
+        char[] nodeChar = new char[capacity];
+        int[] firstChild = new int[capacity];
+        int[] nextSibling = new int[capacity];
+        int[] nodeKeyword = new int[capacity];
+        Arrays.fill(firstChild, -1);
+        Arrays.fill(nextSibling, -1);
+        Arrays.fill(nodeKeyword, -1);
+        int nodeCount = 1;
+        for (int k = 0; k < keywords.size(); k++) {
+            String keyword = keywords.get(k);
+            if (keyword.isEmpty()) {
+                continue;
+            }
+            int node = ROOT;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                int child = firstChild[node];
+                while (child >= 0 && nodeChar[child] != c) {
+                    child = nextSibling[child];
+                }
+                if (child < 0) {
+                    child = nodeCount++;
+                    nodeChar[child] = c;
+                    nextSibling[child] = firstChild[node];
+                    firstChild[node] = child;
+                }
+                node = child;
+            }
+            nodeKeyword[node] = k;
+        }
+
+        // flatten children sorted by char
+        this.childStart = new int[nodeCount + 1];
+        this.childChars = new char[nodeCount - 1];
+        this.childNodes = new int[nodeCount - 1];
+        int pos = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            childStart[node] = pos;
+            for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+                childNodes[pos++] = child;
+            }
+            sortByChar(childStart[node], pos, nodeChar);
+        }
+        childStart[nodeCount] = pos;
+
+        this.rootAscii = new int[ASCII];
+        Arrays.fill(rootAscii, -1);
+        for (int i = childStart[ROOT]; i < childStart[ROOT + 1]; i++) {
+            if (childChars[i] < ASCII) {
+                rootAscii[childChars[i]] = childNodes[i];
+            }
+        }
+
+        // fail and output links, breadth first
+        this.keywords = Arrays.copyOf(nodeKeyword, nodeCount);
+        this.fail = new int[nodeCount];
+        this.outputs = new int[nodeCount];
+        outputs[ROOT] = -1;
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(ROOT);
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int i = childStart[node]; i < childStart[node + 1]; i++) {
+                int child = childNodes[i];
+                int failNode = node == ROOT ? ROOT : next(fail[node], childChars[i]);
+                fail[child] = failNode;
+                outputs[child] = this.keywords[failNode] >= 0 ? failNode : outputs[failNode];
+                queue.add(child);
+            }
+        }
+    }
+
+    private void sortByChar(int from, int to, char[] nodeChar) {
+        // insertion sort, nodes have few children except root
+        for (int i = from; i < to; i++) {
+            int node = childNodes[i];
+            int j = i;
+            while (j > from && nodeChar[childNodes[j - 1]] > nodeChar[node]) {
+                childNodes[j] = childNodes[j - 1];
+                j--;
+            }
+            childNodes[j] = node;
+        }
+        for (int i = from; i < to; i++) {
+            childChars[i] = nodeChar[childNodes[i]];
+        }
+    }
+
+    private int child(int node, char c) {
+        if (node == ROOT && c < ASCII) {
+            return rootAscii[c];
+        }
+        int index = Arrays.binarySearch(childChars, childStart[node], childStart[node + 1], c);
+        return index >= 0 ? childNodes[index] : -1;
+    }
+
+    public int next(int state, char c) {
+        while (true) {
+            int child = child(state, c);
+            if (child >= 0) {
+                return child;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = fail[state];
+        }
+    }
+
+    /**
+     * @return first node with keyword ending at current state, -1 if none
+     */
+    public int match(int state) {
+        return keywords[state] >= 0 ? state : outputs[state];
+    }
+
+    public int nextMatch(int node) {
+        return outputs[node];
+    }
+
+    public int keyword(int node) {
+        return keywords[node];
+    }
+
+    public int keywordLength(int keyword) {
+        return keywordLengths[keyword];
+    }
+
+    public boolean isEmpty() {
+        return childStart[ROOT] == childStart[ROOT + 1];
+    }
+}
@@ -0,0 +1,29 @@
+package com.bt.code.egress.read;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Matches of both matchers, for line and for whole buffer.
+ */
+@RequiredArgsConstructor
+public class AndLineMatcher implements LineMatcher {
+    private final LineMatcher matcher1;
+    private final LineMatcher matcher2;
+
+    @Override
+    public void findMatches(String line, int lineIndex, MatchBuffer matches) {
+        matcher1.findMatches(line, lineIndex, matches);
+        matcher2.findMatches(line, lineIndex, matches);
+    }
+
+    @Override
+    public void findMatches(LineBuffer buffer, MatchBuffer matches) {
+        matcher1.findMatches(buffer, matches);
+        matcher2.findMatches(buffer, matches);
+    }
+
+    @Override
+    public boolean mayMatch(LineBuffer buffer) {
+        return matcher1.mayMatch(buffer) || matcher2.mayMatch(buffer);
+    }
+}
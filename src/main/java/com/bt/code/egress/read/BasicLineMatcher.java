@@ -1,36 +1,41 @@
 package com.bt.code.egress.read;
 
 import com.bt.code.egress.Config;
-import org.apache.commons.lang3.StringUtils;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /**
  * Find non-whole words, e.g. with spaces, in line.
- * Optimization: group words by prefix, lookup prefix first.
+ * Optimization: all values are searched at once by Aho-Corasick automaton, in one pass over line.
+ * Patterns are screened together by {@link PatternSet}.
+ * ASCII line is searched through lower case view, without copy.
+ * Matches are added to {@link MatchBuffer} by rule id, value index or patterns after values.
  */
-public class BasicLineMatcher implements LineMatcher {
-    private final Map<String, Map<String, Map<String, Map<String, String>>>> valuesBy3Prefixes;
-    private final Map<Pattern, String> patterns;
+public class BasicLineMatcher implements LineMatcher, MatchRules {
+    private final String[] values;
+    private final String[] templates;
+    private final AhoCorasick automaton;
+    private final PatternSet patterns;
 
     public BasicLineMatcher(Map<String, String> values, Map<Pattern, String> patterns) {
-        this.valuesBy3Prefixes = values.entrySet().stream()
-                .collect(Collectors.groupingBy(e -> getPrefix(e.getKey(), 1),
-                        Collectors.groupingBy(e -> getPrefix(e.getKey(), 2),
-                                Collectors.groupingBy(e -> getPrefix(e.getKey(), 3),
-                                        Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)))));
-
-        this.patterns = patterns;
+        this(values, new PatternSet(patterns));
     }
 
-    static String getPrefix(String str, int len) {
-        return str.length() > len ? str.substring(0, len) : str;
+    public BasicLineMatcher(Map<String, String> values, PatternSet patterns) {
+        this.values = new String[values.size()];
+        this.templates = new String[values.size()];
+        int i = 0;
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            this.values[i] = entry.getKey();
+            this.templates[i] = entry.getValue();
+            i++;
+        }
+        this.automaton = new AhoCorasick(Arrays.asList(this.values));
+        this.patterns = patterns;
     }
 
     static BasicLineMatcher fromConfig(Config.MatchingMap matchingMap) {
@@ -39,67 +44,108 @@ public class BasicLineMatcher implements LineMatcher {
     }
 
     @Override
-    public List<WordMatch> getMatches(String line) {
-        String lineLowerCase = line.toLowerCase();
-        List<WordMatch> result = Collections.emptyList();
-
-        for (Map.Entry<String, Map<String, Map<String, Map<String, String>>>> by3Prefixes : valuesBy3Prefixes.entrySet()) {
-            int posBy3 = lineLowerCase.indexOf(by3Prefixes.getKey());
-            if (posBy3 < 0) {
-                continue;
-            }
-            for (Map.Entry<String, Map<String, Map<String, String>>> by2Prefix1es : by3Prefixes.getValue().entrySet()) {
-                int posBy2 = lineLowerCase.indexOf(by2Prefix1es.getKey(), posBy3);
-                if (posBy2 < 0) {
-                    continue;
-                }
-                for (Map.Entry<String, Map<String, String>> by1Prefix : by2Prefix1es.getValue().entrySet()) {
-                    int posBy1 = lineLowerCase.indexOf(by1Prefix.getKey(), posBy2);
-                    if (posBy1 < 0) {
-                        continue;
-                    }
-                    for (Map.Entry<String, String> entry : by1Prefix.getValue().entrySet()) {
-                        String value = entry.getKey();
-                        int pos = lineLowerCase.indexOf(value, posBy1);
-                        while (pos >= 0) {
-                            result = addWordMatch(result,
-                                    new LineToken(line, pos, pos + value.length()),
-                                    "Value " + value, entry.getValue());
-                            pos = lineLowerCase.indexOf(value, pos + value.length());
-                        }
-                    }
-                }
-            }
-        }
+    public void findMatches(String line, int lineIndex, MatchBuffer matches) {
+        CharSequence lineLowerCase = LowerCaseView.of(line);
+        findValues(lineLowerCase, matches, (m, value, start, end) ->
+                add(m, value, line, 0, line.length(), lineIndex, start, end));
 
-        for (Map.Entry<Pattern, String> entry : patterns.entrySet()) {
-            Pattern pattern = entry.getKey();
-            Matcher matcher = pattern.matcher(lineLowerCase);
-            while (matcher.find()) {
-                result = addWordMatch(result,
-                        new LineToken(line, matcher.start(), matcher.end()),
-                        "Pattern " + pattern, entry.getValue());
-            }
+        patterns.findAll(lineLowerCase, matches, (m, matcher) -> add(m, getPatternRule(matcher),
+                line, 0, line.length(), lineIndex, matcher.start(), matcher.end()));
+    }
+
+    /**
+     * Scan the whole buffer once, values and patterns are matched in same order as for separate lines.
+     */
+    @Override
+    public void findMatches(LineBuffer buffer, MatchBuffer matches) {
+        String text = buffer.getText();
+        if (!LowerCaseView.isAscii(text, 0, text.length())) {
+            // lower case of other chars may change length of line
+            LineMatcher.super.findMatches(buffer, matches);
+            return;
         }
-        return result;
+        CharSequence textLowerCase = LowerCaseView.of(text);
+        findValues(textLowerCase, matches, (m, value, start, end) -> {
+            int lineIndex = buffer.getLineIndex(start);
+            int lineEnd = buffer.getLineEnd(lineIndex);
+            // skip value which spans several lines
+            return end > lineEnd ? m : add(m, value, text, buffer.getLineStart(lineIndex), lineEnd, lineIndex, start, end);
+        });
+        patterns.findAll(buffer, textLowerCase, (lineIndex, matcher) -> add(matches, getPatternRule(matcher),
+                text, buffer.getLineStart(lineIndex), buffer.getLineEnd(lineIndex), lineIndex, matcher.start(), matcher.end()));
     }
 
-    public static List<WordMatch> addWordMatch(List<WordMatch> result, LineToken lineToken, String matchReason, String template) {
-        if (!lineToken.isWholeWord()) {
-            return result;
+    /**
+     * Any whole word value within line or any possible pattern match.
+     */
+    @Override
+    public boolean mayMatch(LineBuffer buffer) {
+        String text = buffer.getText();
+        if (!LowerCaseView.isAscii(text, 0, text.length())) {
+            return true;
         }
-        // template from value has priority over template from pattern
-        if (result.stream()
-                .filter(m -> lineToken.equals(m.getLineToken()))
-                .anyMatch(m -> StringUtils.isNotBlank(m.getReplacement()) || StringUtils.isNotBlank(m.getTemplate()))) {
+        CharSequence textLowerCase = LowerCaseView.of(text);
+        boolean valueFound = findValues(textLowerCase, false, (found, value, start, end) -> found
+                || (start == 0 || !LineToken.isAlphanumericAt(text, start - 1))
+                && (end == text.length() || !LineToken.isAlphanumericAt(text, end))
+                && buffer.getLineIndex(start) == buffer.getLineIndex(end - 1));
+        return valueFound || patterns.mayMatch(buffer, textLowerCase);
+    }
+
+    interface ValueAccumulator<T> {
+        T apply(T result, int value, int start, int end);
+    }
+
+    /**
+     * Find all values in text, occurrences of same value do not overlap.
+     */
+    private <T> T findValues(CharSequence text, T result, ValueAccumulator<T> accumulator) {
+        if (automaton.isEmpty()) {
             return result;
         }
-        if (result.isEmpty()) {
-            result = new ArrayList<>();
+        // end of last accepted occurrence by value
+        Map<Integer, Integer> lastEnds = null;
+        int state = AhoCorasick.ROOT;
+        for (int pos = 0; pos < text.length(); pos++) {
+            state = automaton.next(state, text.charAt(pos));
+            for (int node = automaton.match(state); node >= 0; node = automaton.nextMatch(node)) {
+                int value = automaton.keyword(node);
+                int end = pos + 1;
+                int start = end - automaton.keywordLength(value);
+                if (lastEnds == null) {
+                    lastEnds = new HashMap<>();
+                } else if (start < lastEnds.getOrDefault(value, 0)) {
+                    continue;
+                }
+                lastEnds.put(value, end);
+                result = accumulator.apply(result, value, start, end);
+            }
         }
-        result.add(new WordMatch(lineToken, matchReason, template, null));
         return result;
+    }
 
+    /**
+     * Add match of whole word text[start, end) within line text[lineStart, lineEnd).
+     */
+    private MatchBuffer add(MatchBuffer matches, int rule, CharSequence text, int lineStart, int lineEnd,
+                            int lineIndex, int start, int end) {
+        if (LineToken.isWholeWord(text, lineStart, lineEnd, start, end)) {
+            matches.add(this, rule, lineIndex, start - lineStart, end - lineStart);
+        }
+        return matches;
+    }
+
+    private int getPatternRule(Matcher matcher) {
+        return values.length + patterns.getIndex(matcher.pattern());
+    }
+
+    @Override
+    public String getReason(int rule) {
+        return rule < values.length ? "Value " + values[rule] : "Pattern " + patterns.getPattern(rule - values.length);
     }
 
+    @Override
+    public String getTemplate(int rule) {
+        return rule < values.length ? templates[rule] : patterns.getTemplate(patterns.getPattern(rule - values.length));
+    }
 }
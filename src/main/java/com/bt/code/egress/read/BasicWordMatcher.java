@@ -1,9 +1,11 @@
 package com.bt.code.egress.read;
 
 import com.bt.code.egress.Config;
+import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 
 import java.util.Map;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -12,20 +14,25 @@ import java.util.stream.Collectors;
 /**
  * Find word in configured set.
  * Used to match line tokenized into whole words, or to match ignored words.
- * Optimization: lookup in hash map whole words from tokenized line.
+ * Optimization: lookup in dictionary whole words from tokenized line, patterns are screened together by {@link PatternSet}.
+ * Rule id of match is value index or patterns after values.
  */
-@RequiredArgsConstructor
-public class BasicWordMatcher implements WordMatcher {
-    private final Map<String, String> values;
-    private final Map<Pattern, String> patterns;
-    private final Function<Matcher, Boolean> patternMatcher;
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class BasicWordMatcher implements WordMatcher, MatchRules {
+    private final WordDictionary values;
+    private final PatternSet patterns;
+    private final BiFunction<PatternSet, CharSequence, Matcher> patternMatcher;
 
     public BasicWordMatcher(Map<String, String> values, Map<Pattern, String> patterns) {
-        this(values, patterns, Matcher::matches);
+        this(values, new PatternSet(patterns));
+    }
+
+    public BasicWordMatcher(Map<String, String> values, PatternSet patterns) {
+        this(new WordDictionary(values), patterns, PatternSet::matchFirst);
     }
 
     public BasicWordMatcher patternPartOfWord() {
-        return new BasicWordMatcher(values, patterns, Matcher::find);
+        return new BasicWordMatcher(values, patterns, PatternSet::findFirst);
     }
 
     public static BasicWordMatcher fromConfig(Config.MatchingSet matchingSet) {
@@ -34,8 +41,13 @@ public class BasicWordMatcher implements WordMatcher {
     }
 
     public static BasicWordMatcher fromConfig(Config.MatchingSet.ValuesAndPatternsSet valuesAndPatterns) {
+        return fromConfig(valuesAndPatterns, 0);
+    }
+
+    public static BasicWordMatcher fromConfig(Config.MatchingSet.ValuesAndPatternsSet valuesAndPatterns, int patternStepsPerChar) {
         return new BasicWordMatcher(valuesAndPatterns.getValues().stream().collect(Collectors.toMap(Function.identity(), e -> "")),
-                valuesAndPatterns.getPatterns().stream().collect(Collectors.toMap(Function.identity(), e -> "")));
+                new PatternSet(valuesAndPatterns.getPatterns().stream().collect(Collectors.toMap(Function.identity(), e -> "")),
+                        patternStepsPerChar));
     }
 
     public static BasicWordMatcher fromConfig(Config.MatchingMap matchingMap) {
@@ -45,17 +57,59 @@ public class BasicWordMatcher implements WordMatcher {
 
     @Override
     public WordMatch getWordMatch(String word) {
-        if (values.containsKey(word)) {
+        return getWordMatch(word, 0, word.length(), word);
+    }
+
+    @Override
+    public WordMatch getWordMatch(CharSequence text, int start, int end) {
+        return getWordMatch(text, start, end, null);
+    }
+
+    @Override
+    public boolean matches(CharSequence text, int start, int end) {
+        return findRule(text, start, end) >= 0;
+    }
+
+    /**
+     * @return rule id of word text[start, end), -1 if not matched
+     */
+    public int findRule(CharSequence text, int start, int end) {
+        int slot = values.find(text, start, end);
+        if (slot >= 0) {
+            return slot;
+        }
+        if (patterns.isEmpty()) {
+            return -1;
+        }
+        Matcher matcher = patternMatcher.apply(patterns, LowerCaseView.of(text, start, end));
+        return matcher != null ? values.size() + patterns.getIndex(matcher.pattern()) : -1;
+    }
+
+    @Override
+    public String getReason(int rule) {
+        return rule < values.size() ? "Value " + values.getKey(rule) : "Pattern " + patterns.getPattern(rule - values.size());
+    }
+
+    @Override
+    public String getTemplate(int rule) {
+        return rule < values.size() ? values.getTemplate(rule) : patterns.getTemplate(patterns.getPattern(rule - values.size()));
+    }
+
+    private WordMatch getWordMatch(CharSequence text, int start, int end, String wordLowerCase) {
+        int slot = values.find(text, start, end);
+        if (slot >= 0) {
+            String word = values.getKey(slot);
             return new WordMatch(new LineToken(word, 0, word.length()),
-                    "Value " + word, values.get(word), null);
+                    "Value " + word, values.getTemplate(slot), null);
+        }
+        if (patterns.isEmpty()) {
+            return null;
         }
-        for (Map.Entry<Pattern, String> patternEntry : patterns.entrySet()) {
-            Pattern pattern = patternEntry.getKey();
-            Matcher matcher = pattern.matcher(word);
-            if (patternMatcher.apply(matcher)) {
-                return new WordMatch(new LineToken(word, matcher.start(), matcher.end()),
-                        "Pattern " + pattern, patternEntry.getValue(), null);
-            }
+        CharSequence word = wordLowerCase != null ? wordLowerCase : LowerCaseView.of(text, start, end);
+        Matcher matcher = patternMatcher.apply(patterns, word);
+        if (matcher != null) {
+            return new WordMatch(new LineToken(word.toString(), matcher.start(), matcher.end()),
+                    "Pattern " + matcher.pattern(), patterns.getTemplate(matcher.pattern()), null);
         }
         return null;
     }
@@ -0,0 +1,69 @@
+package com.bt.code.egress.read;
+
+import com.bt.code.egress.report.Stats;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Text for one pattern evaluation, which counts chars read by regex engine.
+ * Regex with catastrophic backtracking reads same chars again and again,
+ * so evaluation is stopped by exception when count exceeds the budget.
+ */
+@Slf4j
+class BudgetCharSequence implements CharSequence {
+    // allowed for any text, short texts are never stopped
+    static final long MIN_BUDGET = 100_000;
+
+    private final CharSequence text;
+    private final Pattern pattern;
+    // patterns which exceeded budget, reported once, null - not reported
+    private final Set<Pattern> flagged;
+    @Getter
+    private long remaining;
+
+    BudgetCharSequence(CharSequence text, Pattern pattern, long budget, Set<Pattern> flagged) {
+        this.text = text;
+        this.pattern = pattern;
+        this.remaining = budget;
+        this.flagged = flagged;
+    }
+
+    /**
+     * Start a new evaluation on the same text, e.g. on next line region of buffer.
+     */
+    void reset(long budget) {
+        remaining = budget;
+    }
+
+    @Override
+    public int length() {
+        return text.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (--remaining < 0) {
+            if (flagged != null) {
+                Stats.patternOverBudget();
+                if (flagged.add(pattern)) {
+                    log.warn("Pattern exceeded step budget, check it for catastrophic backtracking: {}", pattern);
+                }
+            }
+            throw new PatternBudgetExceededException(pattern, text.length());
+        }
+        return text.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return text.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+}
@@ -0,0 +1,46 @@
+package com.bt.code.egress.read;
+
+import com.bt.code.egress.report.Stats;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Remember match of lower cased word, source code repeats same identifiers many times.
+ * Used for matchers with patterns, where lookup is much more expensive than the cache.
+ */
+public class CachingWordMatcher implements WordMatcher {
+    private final WordMatcher wordMatcher;
+    private final Cache<String, Optional<WordMatch>> cache;
+
+    public CachingWordMatcher(WordMatcher wordMatcher, long maxSize) {
+        this.wordMatcher = wordMatcher;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public WordMatch getWordMatch(String word) {
+        try {
+            return cache.get(word, () -> Optional.ofNullable(wordMatcher.getWordMatch(word))).orElse(null);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to match word " + word, e.getCause());
+        }
+    }
+
+    @Override
+    public WordMatch getWordMatch(CharSequence text, int start, int end) {
+        return getWordMatch(LowerCaseView.of(text, start, end).toString());
+    }
+
+    public void dumpStats(String name) {
+        CacheStats stats = cache.stats();
+        Stats.increment(name + " Hits", stats.hitCount());
+        Stats.increment(name + " Misses", stats.missCount());
+    }
+}
@@ -1,14 +1,11 @@
 package com.bt.code.egress.read;
 
-import com.bt.code.egress.file.ReaderCharsetSelector;
-import com.bt.code.egress.process.FileLocation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.csv.QuoteMode;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 
 @RequiredArgsConstructor
 @Slf4j
@@ -17,15 +14,37 @@ public class CsvFormatDetector {
     private final char quote;
     private final Character commentMarker;
 
-    public QuoteMode guessQuoteMode(FileLocation file) throws IOException {
-        return ReaderCharsetSelector.doWithBufferedReader(file, this::getQuoteMode, StandardCharsets.ISO_8859_1);
+    private static final int PEEK_LIMIT = 1 << 20;
+
+    /**
+     * Guess quote mode from beginning of reader, then reset reader, so file is not opened again.
+     * No more than PEEK_LIMIT chars are read, so reset is always valid.
+     */
+    public QuoteMode peekQuoteMode(BufferedReader br) throws IOException {
+        br.mark(PEEK_LIMIT);
+        try {
+            return getQuoteMode(br);
+        } finally {
+            br.reset();
+        }
     }
 
+    /**
+     * Quote mode by first char of first record, comment lines and empty lines are skipped.
+     * ALL by default if no record starts within PEEK_LIMIT chars.
+     */
     QuoteMode getQuoteMode(BufferedReader br) throws IOException {
-        String line;
-        while ((line = br.readLine()) != null) {
-            if (commentMarker == null || line.charAt(0) != commentMarker) {
-                return line.charAt(0) == quote ? QuoteMode.ALL : QuoteMode.MINIMAL;
+        boolean lineStart = true;
+        int c;
+        for (int read = 0; read < PEEK_LIMIT && (c = br.read()) >= 0; read++) {
+            if (c == '\r' || c == '\n') {
+                lineStart = true;
+            } else if (lineStart) {
+                // first char of line, rest of comment line is skipped
+                if (commentMarker == null || c != commentMarker) {
+                    return c == quote ? QuoteMode.ALL : QuoteMode.MINIMAL;
+                }
+                lineStart = false;
             }
         }
         //Default
@@ -0,0 +1,87 @@
+package com.bt.code.egress.read;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Distinct file filters of instruction rows by id, all of them are matched to a file at once.
+ * Filters without wildcards are found in hash maps by name and by Ant path tokens,
+ * only globs are matched one by one. Tokenized globs are cached however many they are.
+ */
+class FileFilters {
+    private final AntPathMatcher pathMatcher = new AntPathMatcher("/");
+    private final List<String> filters = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final Map<String, List<Integer>> idsByTokens = new HashMap<>();
+    private final List<Integer> globIds = new ArrayList<>();
+
+    FileFilters() {
+        pathMatcher.setCachePatterns(true);
+    }
+
+    /**
+     * @return id of filter, -1 for blank filter which matches any file
+     */
+    int getId(String filter) {
+        if (StringUtils.isBlank(filter)) {
+            return -1;
+        }
+        return ids.computeIfAbsent(filter, f -> {
+            int id = filters.size();
+            filters.add(f);
+            if (StringUtils.containsAny(f, '*', '?', '{')) {
+                globIds.add(id);
+            } else {
+                idsByTokens.computeIfAbsent(toTokens(f), t -> new ArrayList<>()).add(id);
+            }
+            return id;
+        });
+    }
+
+    int size() {
+        return filters.size();
+    }
+
+    /**
+     * Filter matches if it equals file or Ant matches file with slashes.
+     *
+     * @return ids of matched filters
+     */
+    BitSet match(String file) {
+        BitSet matched = new BitSet(filters.size());
+        if (file == null || filters.isEmpty()) {
+            return matched;
+        }
+        String slashed = file.replace('\\', '/');
+        Integer id = ids.get(file);
+        if (id != null) {
+            matched.set(id);
+        }
+        idsByTokens.getOrDefault(toTokens(slashed), Collections.emptyList()).forEach(matched::set);
+        for (int globId : globIds) {
+            if (!matched.get(globId) && pathMatcher.match(filters.get(globId), slashed)) {
+                matched.set(globId);
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Ant matches path without wildcards if leading and trailing separators are same
+     * and not empty tokens are equal.
+     */
+    private static String toTokens(String path) {
+        return (path.startsWith("/") ? "/" : "")
+                + Arrays.stream(path.split("/")).filter(t -> !t.isEmpty()).collect(Collectors.joining("/"))
+                + (path.endsWith("/") ? "/" : "");
+    }
+}
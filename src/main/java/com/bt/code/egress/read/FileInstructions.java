@@ -0,0 +1,42 @@
+package com.bt.code.egress.read;
+
+import com.bt.code.egress.report.Report;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.BitSet;
+import java.util.function.Supplier;
+
+/**
+ * Instructions applicable to one file, taken when processing of the file starts.
+ * File filters of all rows are matched once, lookup of a word only checks which of them matched.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+public class FileInstructions {
+    private final InstructionMatcher instructionMatcher;
+    @Getter
+    private final String file;
+    private final BitSet matchedFileFilters;
+    // same for files with same matched file filters
+    private final int fileScope;
+
+    public Report.ReportLine getInstruction(LineLocation lineLocation, LineToken lineToken, String wordContext) {
+        return getInstruction(lineLocation, lineToken, () -> wordContext);
+    }
+
+    /**
+     * @param lineLocation in this file
+     * @param wordContextSupplier called only if word has instruction rows
+     */
+    public Report.ReportLine getInstruction(LineLocation lineLocation, LineToken lineToken, Supplier<String> wordContextSupplier) {
+        return instructionMatcher.getInstruction(lineLocation, lineToken, wordContextSupplier, matchedFileFilters, fileScope);
+    }
+
+    /**
+     * @return true if file is allowed by row without word, e.g. failed in previous run
+     */
+    public boolean isAllowedFile() {
+        return instructionMatcher.getAllowFilePathMatcher().match(file.toLowerCase());
+    }
+}
@@ -0,0 +1,167 @@
+package com.bt.code.egress.read;
+
+import com.bt.code.egress.report.Report;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Instruction rows of one word in priority order, indexed by context and line.
+ * Candidates for token context are rows with blank context, rows with equal context
+ * and rows with part context - contained in longer token context.
+ * Many part contexts are searched by Aho-Corasick automaton in one pass over token context.
+ */
+class InstructionIndex {
+    static final int AUTOMATON_MIN_CONTEXTS = 16;
+    private static final int[] NONE = new int[0];
+
+    private final List<Report.ReportLine> rows;
+    // id of file filter by row, -1 for any file
+    private final int[] fileFilterIds;
+    // row positions are ascending in all arrays
+    private final int[] blankContextRows;
+    private final Map<String, int[]> rowsByContext;
+    private final String[] partContexts;
+    private final int[][] partContextRows;
+    private final AhoCorasick partAutomaton;
+    // rows with file and line, they have priority on that line
+    private final Map<Integer, int[]> lineRows;
+
+    /**
+     * @param rows sorted by priority
+     */
+    InstructionIndex(String word, List<Report.ReportLine> rows, int contextMinCompareLength, FileFilters fileFilters) {
+        this.rows = rows;
+        this.fileFilterIds = rows.stream().mapToInt(row -> fileFilters.getId(row.getFile())).toArray();
+        List<Integer> blank = new ArrayList<>();
+        Map<String, List<Integer>> byContext = new HashMap<>();
+        Map<String, List<Integer>> byPartContext = new LinkedHashMap<>();
+        Map<Integer, List<Integer>> byLine = new HashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            Report.ReportLine row = rows.get(i);
+            String context = row.getContext();
+            if (StringUtils.isBlank(context)) {
+                blank.add(i);
+            } else {
+                byContext.computeIfAbsent(context, c -> new ArrayList<>()).add(i);
+                // ability to provide only part of context
+                if (context.length() >= word.length() + contextMinCompareLength && context.contains(word)) {
+                    byPartContext.computeIfAbsent(context, c -> new ArrayList<>()).add(i);
+                }
+            }
+            if (StringUtils.isNotBlank(row.getFile()) && row.getLine() != null) {
+                byLine.computeIfAbsent(row.getLine(), l -> new ArrayList<>()).add(i);
+            }
+        }
+        this.blankContextRows = toArray(blank);
+        this.rowsByContext = new HashMap<>();
+        byContext.forEach((context, list) -> rowsByContext.put(context, toArray(list)));
+        this.partContexts = byPartContext.keySet().toArray(new String[0]);
+        this.partContextRows = byPartContext.values().stream().map(InstructionIndex::toArray).toArray(int[][]::new);
+        this.partAutomaton = partContexts.length >= AUTOMATON_MIN_CONTEXTS ? new AhoCorasick(Arrays.asList(partContexts)) : null;
+        this.lineRows = new HashMap<>();
+        byLine.forEach((line, list) -> lineRows.put(line, toArray(list)));
+    }
+
+    List<Report.ReportLine> getRows() {
+        return rows;
+    }
+
+    /**
+     * @return true if rows with exact line may change result on the line
+     */
+    boolean hasLineRows(Integer lineNum) {
+        return lineNum != null && lineRows.containsKey(lineNum);
+    }
+
+    /**
+     * Same as first row by priority with context and file matched, but row with exact line goes first.
+     *
+     * @param tokenContext       lower cased
+     * @param matchedFileFilters ids of file filters matched to file
+     * @return null if no row matched
+     */
+    Report.ReportLine find(String tokenContext, Integer lineNum, BitSet matchedFileFilters) {
+        int[] candidates = getCandidates(tokenContext);
+        if (candidates.length == 0) {
+            return null;
+        }
+        int[] onLine = lineNum == null ? null : lineRows.get(lineNum);
+        if (onLine != null) {
+            for (int row : onLine) {
+                if (Arrays.binarySearch(candidates, row) >= 0 && isFileMatched(row, matchedFileFilters)) {
+                    return rows.get(row);
+                }
+            }
+        }
+        for (int row : candidates) {
+            if (isFileMatched(row, matchedFileFilters)) {
+                return rows.get(row);
+            }
+        }
+        return null;
+    }
+
+    private boolean isFileMatched(int row, BitSet matchedFileFilters) {
+        int id = fileFilterIds[row];
+        return id < 0 || matchedFileFilters.get(id);
+    }
+
+    /**
+     * @return ascending distinct positions of rows with matching context
+     */
+    private int[] getCandidates(String tokenContext) {
+        int[] exact = rowsByContext.getOrDefault(tokenContext, NONE);
+        List<int[]> parts = findPartContextRows(tokenContext);
+        if (parts.isEmpty()) {
+            return exact.length == 0 ? blankContextRows : blankContextRows.length == 0 ? exact : merge(Arrays.asList(blankContextRows, exact));
+        }
+        parts.add(blankContextRows);
+        parts.add(exact);
+        return merge(parts);
+    }
+
+    private List<int[]> findPartContextRows(String tokenContext) {
+        List<int[]> found = new ArrayList<>();
+        if (partAutomaton != null) {
+            int state = AhoCorasick.ROOT;
+            for (int i = 0; i < tokenContext.length(); i++) {
+                state = partAutomaton.next(state, tokenContext.charAt(i));
+                for (int node = partAutomaton.match(state); node >= 0; node = partAutomaton.nextMatch(node)) {
+                    int keyword = partAutomaton.keyword(node);
+                    if (partContexts[keyword].length() < tokenContext.length()) {
+                        found.add(partContextRows[keyword]);
+                    }
+                }
+            }
+        } else {
+            for (int i = 0; i < partContexts.length; i++) {
+                if (partContexts[i].length() < tokenContext.length() && tokenContext.contains(partContexts[i])) {
+                    found.add(partContextRows[i]);
+                }
+            }
+        }
+        return found;
+    }
+
+    private static int[] merge(List<int[]> lists) {
+        int[] merged = lists.stream().flatMapToInt(Arrays::stream).sorted().toArray();
+        int size = 0;
+        for (int i = 0; i < merged.length; i++) {
+            if (size == 0 || merged[size - 1] != merged[i]) {
+                merged[size++] = merged[i];
+            }
+        }
+        return size == merged.length ? merged : Arrays.copyOf(merged, size);
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        return list.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
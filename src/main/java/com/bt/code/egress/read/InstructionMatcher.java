@@ -1,32 +1,80 @@
 package com.bt.code.egress.read;
 
+import com.bt.code.egress.Config;
 import com.bt.code.egress.process.RestoreWordReplacementGenerator;
 import com.bt.code.egress.process.WordReplacementGenerator;
 import com.bt.code.egress.report.Report;
 import com.bt.code.egress.report.ReportHelper;
-import lombok.RequiredArgsConstructor;
+import com.bt.code.egress.report.Stats;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.File;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
-@RequiredArgsConstructor
 @Slf4j
 public class InstructionMatcher {
     private final ReportHelper reportHelper;
-    private final Map<String, List<Report.ReportLine>> rowsByText;
+    private final Map<String, InstructionIndex> indexByText;
     private final Map<String, Set<String>> replacementsByWord;
+    private final FileFilters fileFilters = new FileFilters();
+    private final FilePathMatcher allowFilePathMatcher;
+    // decisions do not depend on file, only on which file filters it matched
+    private final Map<BitSet, Integer> fileScopes = new ConcurrentHashMap<>();
+    private final AtomicInteger fileScopeCount = new AtomicInteger();
+    // null if disabled
+    private final Cache<Decision, Optional<Report.ReportLine>> decisions;
 
-    public static InstructionMatcher fromConfigs(ReportHelper reportHelper, Set<File> instructionFiles) {
+    @Value
+    private static class Decision {
+        String word;
+        String context;
+        int fileScope;
+    }
+
+    public InstructionMatcher(ReportHelper reportHelper, Map<String, List<Report.ReportLine>> rowsByText,
+                              Map<String, Set<String>> replacementsByWord) {
+        this(reportHelper, rowsByText, replacementsByWord, 0);
+    }
+
+    /**
+     * @param rowsByText lower cased rows sorted by priority
+     * @param cacheSize  decisions by word, context and file filters, 0 to disable
+     */
+    public InstructionMatcher(ReportHelper reportHelper, Map<String, List<Report.ReportLine>> rowsByText,
+                              Map<String, Set<String>> replacementsByWord, long cacheSize) {
+        this.reportHelper = reportHelper;
+        this.indexByText = new HashMap<>();
+        rowsByText.forEach((text, rows) -> indexByText.put(text,
+                new InstructionIndex(text, rows, reportHelper.getContextMinCompareLength(), fileFilters)));
+        this.replacementsByWord = replacementsByWord;
+        this.allowFilePathMatcher = createAllowFilePathMatcher();
+        this.decisions = cacheSize > 0 ? CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .recordStats()
+                .build() : null;
+    }
+
+    public static InstructionMatcher fromConfig(ReportHelper reportHelper, Config.InstructionConfig instructionConfig) {
+        Set<File> instructionFiles = instructionConfig.getFiles();
         Map<String, List<Report.ReportLine>> rowsByWord = instructionFiles.stream()
                 .map(file -> reportHelper.read(file.toPath()))
                 .flatMap(Collection::stream)
@@ -47,51 +95,74 @@ public class InstructionMatcher {
                 .filter(r -> StringUtils.isNotBlank((r.getReplacement())))
                 .collect(Collectors.groupingBy(r -> r.getText().toLowerCase(),
                         Collectors.mapping(Report.ReportLine::getReplacement, Collectors.toSet())));
-        return new InstructionMatcher(reportHelper, rowsByWord, replacementsByWord);
+        return new InstructionMatcher(reportHelper, rowsByWord, replacementsByWord, instructionConfig.getCacheSize());
     }
 
 
+    /**
+     * @param file reported path of file
+     * @return view to use for all lines of file
+     */
+    public FileInstructions forFile(String file) {
+        BitSet matchedFileFilters = fileFilters.match(file);
+        int fileScope = fileScopes.computeIfAbsent(matchedFileFilters, m -> fileScopeCount.getAndIncrement());
+        return new FileInstructions(this, file, matchedFileFilters, fileScope);
+    }
+
     public Report.ReportLine getInstruction(LineLocation lineLocation, LineToken lineToken, String wordContext) {
+        return forFile(lineLocation.getFile()).getInstruction(lineLocation, lineToken, wordContext);
+    }
+
+    Report.ReportLine getInstruction(LineLocation lineLocation, LineToken lineToken, Supplier<String> wordContextSupplier,
+                                     BitSet matchedFileFilters, int fileScope) {
         String word = lineToken.getWordLowerCase();
-        List<Report.ReportLine> reportLines = rowsByText.get(word);
-        if (reportLines == null || reportLines.isEmpty()) {
+        InstructionIndex index = indexByText.get(word);
+        if (index == null || index.getRows().isEmpty()) {
             return null;
         }
 
+        String wordContext = wordContextSupplier.get();
         String tokenContext = wordContext.toLowerCase();
-        Optional<Report.ReportLine> optionalAllowed = reportLines.stream()
-                .filter(r -> {
-                    String context = r.getContext();
-                    return StringUtils.isBlank(context) || context.equals(tokenContext)
-                            // ability to provide only part of context
-                            || tokenContext.length() > context.length() && context.length() >= word.length() + reportHelper.getContextMinCompareLength()
-                            && tokenContext.contains(context) && context.contains(word);
-                })
-                .filter(r -> {
-                    String file = r.getFile();
-                    return StringUtils.isBlank(file) || file.equals(lineLocation.getFile())
-                            // ability to use file path filter
-                            || FilePathMatcher.match(file, lineLocation.getFile());
-                })
-                // first match has longer context - order from fromConfigs
-                .min(Comparator.comparingInt(r ->
-                        // exact line num match has priority
-                        StringUtils.isNotBlank(r.getFile()) && r.getLine() != null
-                                && r.getLine().equals(lineLocation.getLineNum()) ? 0 : 1));
-
-        optionalAllowed.ifPresent(allowed -> log.info("Report allowed: {} for {}, {}, {}", allowed, word, wordContext, lineLocation));
-        return optionalAllowed.orElse(null);
+        Report.ReportLine allowed;
+        // rows with exact line make decision line specific
+        if (decisions != null && !index.hasLineRows(lineLocation.getLineNum())) {
+            try {
+                allowed = decisions.get(new Decision(word, tokenContext, fileScope), () ->
+                        Optional.ofNullable(index.find(tokenContext, null, matchedFileFilters))).orElse(null);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Failed to find instruction for " + word, e.getCause());
+            }
+        } else {
+            allowed = index.find(tokenContext, lineLocation.getLineNum(), matchedFileFilters);
+        }
+
+        if (allowed != null) {
+            log.info("Report allowed: {} for {}, {}, {}", allowed, word, wordContext, lineLocation);
+        }
+        return allowed;
     }
 
     public FilePathMatcher getAllowFilePathMatcher() {
-        List<Report.ReportLine> noWord = rowsByText.get("");
-        Set<String> fileFilters = noWord == null ? Collections.emptySet() : noWord.stream()
+        return allowFilePathMatcher;
+    }
+
+    private FilePathMatcher createAllowFilePathMatcher() {
+        InstructionIndex noWord = indexByText.get("");
+        Set<String> fileFilters = noWord == null ? Collections.emptySet() : noWord.getRows().stream()
                 .map(Report.ReportLine::getFile)
                 .filter(Objects::nonNull)
                 .collect(Collectors.toSet());
         return new FilePathMatcher(fileFilters, Collections.emptySet());
     }
 
+    public void dumpStats() {
+        if (decisions != null) {
+            CacheStats stats = decisions.stats();
+            Stats.increment("Instruction Cache Hits", stats.hitCount());
+            Stats.increment("Instruction Cache Misses", stats.missCount());
+        }
+    }
+
     public Map<String, String> getSimpleReplacements() {
         return replacementsByWord.entrySet().stream()
                 .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().size() == 1
@@ -0,0 +1,67 @@
+package com.bt.code.egress.read;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Lines of file joined into one text, to scan the whole file at once.
+ * Lines are separated by '\n', position in text is mapped back to line by index of line starts.
+ */
+public class LineBuffer {
+    @Getter
+    private final List<String> lines;
+    @Getter
+    private final String text;
+    private final int[] lineStarts;
+
+    public LineBuffer(List<String> lines) {
+        this.lines = lines;
+        this.lineStarts = new int[lines.size()];
+        StringBuilder text = new StringBuilder(lines.stream().mapToInt(l -> l.length() + 1).sum());
+        for (int i = 0; i < lines.size(); i++) {
+            if (i > 0) {
+                text.append('\n');
+            }
+            lineStarts[i] = text.length();
+            text.append(lines.get(i));
+        }
+        this.text = text.toString();
+    }
+
+    public int size() {
+        return lines.size();
+    }
+
+    public String getLine(int index) {
+        return lines.get(index);
+    }
+
+    public int getLineStart(int index) {
+        return lineStarts[index];
+    }
+
+    public int getLineEnd(int index) {
+        return lineStarts[index] + lines.get(index).length();
+    }
+
+    /**
+     * @return index of line containing position in text, separator belongs to previous line
+     */
+    public int getLineIndex(int pos) {
+        int index = Arrays.binarySearch(lineStarts, pos);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * @return token by position in text, null if it spans several lines
+     */
+    public LineToken getLineToken(int lineIndex, int start, int end) {
+        if (end > getLineEnd(lineIndex)) {
+            return null;
+        }
+        int lineStart = lineStarts[lineIndex];
+        return new LineToken(lines.get(lineIndex), start - lineStart, end - lineStart);
+    }
+}
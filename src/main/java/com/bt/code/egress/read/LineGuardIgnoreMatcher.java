@@ -1,14 +1,14 @@
 package com.bt.code.egress.read;
 
 import com.bt.code.egress.Config;
+import com.bt.code.egress.report.Stats;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.function.IntFunction;
 import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
@@ -17,6 +17,12 @@ public class LineGuardIgnoreMatcher implements LineMatcher {
 
     private final LineMatcher guardMatcher;
     private final WordMatcher ignoreMatcher;
+    // null if lines are not filtered
+    private final MatchStartChars startChars;
+
+    public LineGuardIgnoreMatcher(LineMatcher guardMatcher, WordMatcher ignoreMatcher) {
+        this(guardMatcher, ignoreMatcher, null);
+    }
 
     public static LineGuardIgnoreMatcher fromConfigsRaw(Config.MatchingMaps matchingMaps) {
         LineMatcher guard = BasicLineMatcher.fromConfig(matchingMaps.getGuard());
@@ -27,7 +33,7 @@ public class LineGuardIgnoreMatcher implements LineMatcher {
     public static LineGuardIgnoreMatcher fromConfigs(Config.MatchingMaps matchingMaps) {
         Config.MatchingMap.ValuesAndPatternsMap guardVnP = matchingMaps.getGuard().load();
         Config.MatchingSet.ValuesAndPatternsSet ignoreVnP = matchingMaps.getIgnore().load();
-        return fromConfigs(guardVnP, ignoreVnP);
+        return fromConfigs(guardVnP, ignoreVnP, matchingMaps);
     }
 
     public static LineGuardIgnoreMatcher fromConfigs(Config.MatchingMaps matchingMaps, Map<String, String> instructionReplacements) {
@@ -35,55 +41,106 @@ public class LineGuardIgnoreMatcher implements LineMatcher {
         Config.MatchingSet.ValuesAndPatternsSet ignoreVnP = matchingMaps.getIgnore().load();
         Map<String, String> guardValues = new HashMap<>(guardVnP.getValues());
         instructionReplacements.forEach((word, replacement) -> guardValues.computeIfAbsent(word, n -> replacement));
-        return fromConfigs(new Config.MatchingMap.ValuesAndPatternsMap(guardValues, guardVnP.getPatterns()), ignoreVnP);
+        return fromConfigs(new Config.MatchingMap.ValuesAndPatternsMap(guardValues, guardVnP.getPatterns()), ignoreVnP,
+                matchingMaps);
     }
 
     /**
      * Optimizations:
      * - for whole words: tokenize line, check tokens are in hash map.
-     * - for non-whole words: group words by prefix, check group if line contain its prefix.
+     * - for non-whole words: search all of them at once by Aho-Corasick automaton.
+     * - for ignore patterns: cache decision by word.
+     * - skip line without chars which can start a match.
+     * Patterns have step budget if configured.
      */
     private static LineGuardIgnoreMatcher fromConfigs(Config.MatchingMap.ValuesAndPatternsMap guardVnP,
-                                                      Config.MatchingSet.ValuesAndPatternsSet ignoreVnP) {
-        Set<String> wholeWords = guardVnP.getValues().keySet().stream()
-                .filter(w -> {
-                    for (int i = 0; i < w.length(); i++) {
-                        if (!LineToken.isAlphanumeric(w.codePointAt(i))) {
-                            return false;
-                        }
-                    }
-                    return true;
-                })
-                .collect(Collectors.toSet());
-        HashMap<String, String> words = new HashMap<>(guardVnP.getValues());
-        words.keySet().retainAll(wholeWords);
-        HashMap<String, String> phrases = new HashMap<>(guardVnP.getValues());
-        phrases.keySet().removeAll(wholeWords);
+                                                      Config.MatchingSet.ValuesAndPatternsSet ignoreVnP,
+                                                      Config.MatchingMaps matchingMaps) {
+        long cacheSize = matchingMaps.getCacheSize();
+        int patternStepsPerChar = matchingMaps.getPatternStepsPerChar();
+        Map<Boolean, Map<String, String>> byWholeWord = guardVnP.getValues().entrySet().stream()
+                .collect(Collectors.partitioningBy(e -> isWholeWord(e.getKey()),
+                        Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+        Map<String, String> words = byWholeWord.get(true);
+        Map<String, String> phrases = byWholeWord.get(false);
         log.info("Config: {} whole words, {} phrases", words.size(), phrases.size());
 
-        LineMatcher guard = new BasicLineMatcher(phrases, guardVnP.getPatterns())
+        LineMatcher guard = new BasicLineMatcher(phrases, new PatternSet(guardVnP.getPatterns(), patternStepsPerChar))
                 .and(new LineTokenMatcher(new BasicWordMatcher(words, Collections.emptyMap())));
-        WordMatcher ignore = BasicWordMatcher.fromConfig(ignoreVnP).patternPartOfWord();
-        return new LineGuardIgnoreMatcher(guard, ignore);
+        WordMatcher ignore = BasicWordMatcher.fromConfig(ignoreVnP, patternStepsPerChar).patternPartOfWord();
+        if (cacheSize > 0 && !ignoreVnP.getPatterns().isEmpty()) {
+            ignore = new CachingWordMatcher(ignore, cacheSize);
+        }
+        RuleProfiler.register("Guard", guardVnP.getValues().keySet(), guardVnP.getPatterns().keySet());
+        RuleProfiler.register("Ignore", ignoreVnP.getValues(), ignoreVnP.getPatterns());
+        MatchStartChars startChars = MatchStartChars.of(guardVnP.getValues().keySet(), guardVnP.getPatterns().keySet());
+        return new LineGuardIgnoreMatcher(guard, ignore, startChars);
+    }
+
+    public void dumpStats() {
+        if (ignoreMatcher instanceof CachingWordMatcher) {
+            ((CachingWordMatcher) ignoreMatcher).dumpStats("Ignore Cache");
+        }
+    }
+
+    private static boolean isWholeWord(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (!LineToken.isAlphanumeric(value.codePointAt(i))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
-    public List<WordMatch> getMatches(String line) {
-        List<WordMatch> matches = guardMatcher.getMatches(line);
-        if (matches.isEmpty()) {
-            return matches;
+    public void findMatches(String line, int lineIndex, MatchBuffer matches) {
+        if (startChars != null && !startChars.mayMatch(line, 0, line.length())) {
+            matches.lineSkipped();
+            return;
         }
-        return matches.stream()
-                .filter(match -> {
-                    WordMatch ignoreReason = ignoreMatcher.getWordMatch(match.getLineToken().getWordLowerCase());
-                    if (ignoreReason == null) {
-                        return true;
-                    } else {
-//                        todo log or notify
-                        return false;
-                    }
-                })
-                .collect(Collectors.toList());
+        int from = matches.size();
+        guardMatcher.findMatches(line, lineIndex, matches);
+        removeIgnored(matches, from, i -> line);
     }
 
+    @Override
+    public void findMatches(LineBuffer buffer, MatchBuffer matches) {
+        String text = buffer.getText();
+        if (startChars != null && !startChars.mayMatch(text, 0, text.length())) {
+            Stats.linesSkipped(buffer.size());
+            return;
+        }
+        int from = matches.size();
+        guardMatcher.findMatches(buffer, matches);
+        removeIgnored(matches, from, buffer::getLine);
+    }
+
+    @Override
+    public boolean mayMatch(LineBuffer buffer) {
+        String text = buffer.getText();
+        return (startChars == null || startChars.mayMatch(text, 0, text.length()))
+                && guardMatcher.mayMatch(buffer);
+    }
+
+    private void removeIgnored(MatchBuffer matches, int from, IntFunction<String> lines) {
+        if (matches.size() == from) {
+            return;
+        }
+        matches.groupByLine(from);
+        if (RuleProfiler.isEnabled()) {
+            matches.removeIf(from, i -> isIgnoredProfiled(lines.apply(matches.getLine(i)), matches, i));
+            return;
+        }
+        matches.removeIf(from, i -> ignoreMatcher.matches(lines.apply(matches.getLine(i)), matches.getStart(i), matches.getEnd(i)));
+    }
+
+    private boolean isIgnoredProfiled(String line, MatchBuffer matches, int index) {
+        RuleProfiler.hit("Guard", matches.getReason(index));
+        WordMatch ignoreMatch = ignoreMatcher.getWordMatch(line, matches.getStart(index), matches.getEnd(index));
+        if (ignoreMatch == null) {
+            return false;
+        }
+        RuleProfiler.hit("Ignore", ignoreMatch.getReason());
+        return true;
+    }
 }
@@ -1,24 +1,47 @@
 package com.bt.code.egress.read;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public interface LineMatcher {
-    List<WordMatch> getMatches(String line);
+    /**
+     * Add matches of line to buffer, positions are relative to line.
+     */
+    void findMatches(String line, int lineIndex, MatchBuffer matches);
+
+    /**
+     * Add matches of every line of buffer, by line index.
+     */
+    default void findMatches(LineBuffer buffer, MatchBuffer matches) {
+        for (int i = 0; i < buffer.size(); i++) {
+            findMatches(buffer.getLine(i), i, matches);
+        }
+    }
+
+    default List<WordMatch> getMatches(String line) {
+        MatchBuffer matches = new MatchBuffer();
+        findMatches(line, 0, matches);
+        matches.flushSkippedLines();
+        matches.groupByLine(0);
+        return matches.toWordMatches(0, matches.size(), line);
+    }
+
+    default boolean hasMatches(String line) {
+        MatchBuffer matches = new MatchBuffer();
+        findMatches(line, 0, matches);
+        matches.flushSkippedLines();
+        return matches.size() > 0;
+    }
+
+    /**
+     * Fast conservative check of the whole buffer.
+     *
+     * @return false if no line of buffer can have matches
+     */
+    default boolean mayMatch(LineBuffer buffer) {
+        return true;
+    }
 
     default LineMatcher and(LineMatcher other) {
-        return line -> {
-            List<WordMatch> matches1 = getMatches(line);
-            List<WordMatch> matches2 = other.getMatches(line);
-            if (matches1.isEmpty()) {
-                return matches2;
-            }
-            if (matches2.isEmpty()) {
-                return matches1;
-            }
-            List<WordMatch> result = new ArrayList<>(matches1);
-            result.addAll(matches2);
-            return result;
-        };
+        return new AndLineMatcher(this, other);
     }
 }
@@ -7,6 +7,14 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 @EqualsAndHashCode(exclude = {"word", "wordLowerCase"})
 public class LineToken {
+    private static final boolean[] ASCII_ALPHANUMERIC = new boolean[128];
+
+    static {
+        for (char c = 0; c < ASCII_ALPHANUMERIC.length; c++) {
+            ASCII_ALPHANUMERIC[c] = isAlphanumeric(c);
+        }
+    }
+
     @Getter
     private final String line;
     @Getter
@@ -40,13 +48,27 @@ public class LineToken {
     }
 
     public boolean isWholeWord() {
-        return (startPos <= 0 || !isAlphanumericAt(startPos - 1))
-                && (endPos >= line.length() || !isAlphanumericAt(endPos));
+        return isWholeWord(line, 0, line.length(), startPos, endPos);
+    }
+
+    /**
+     * @return true if text[start, end) is not a part of longer word within text[from, to)
+     */
+    public static boolean isWholeWord(CharSequence text, int from, int to, int start, int end) {
+        return (start <= from || !isAlphanumericAt(text, start - 1))
+                && (end >= to || !isAlphanumericAt(text, end));
     }
 
     public boolean isAlphanumericAt(int index) {
-        int codePoint = line.codePointAt(index);
-        return isAlphanumeric(codePoint);
+        return isAlphanumericAt(line, index);
+    }
+
+    public static boolean isAlphanumericAt(CharSequence line, int index) {
+        char c = line.charAt(index);
+        if (c < ASCII_ALPHANUMERIC.length) {
+            return ASCII_ALPHANUMERIC[c];
+        }
+        return isAlphanumeric(Character.codePointAt(line, index));
     }
 
     public static boolean isAlphanumeric(int codePoint) {
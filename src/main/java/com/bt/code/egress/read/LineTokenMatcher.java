@@ -2,47 +2,61 @@ package com.bt.code.egress.read;
 
 import lombok.RequiredArgsConstructor;
 
-import java.util.Collections;
-import java.util.List;
-
 /**
  * Used as optimization - split line into words and lookup in hash map instead of searching each word in the line.
+ * Words are looked up by position in line, only rule id and position of matched word are kept.
  */
 @RequiredArgsConstructor
 public class LineTokenMatcher implements LineMatcher {
-    private final WordMatcher wordMatcher;
+    private final BasicWordMatcher wordMatcher;
 
     @Override
-    public List<WordMatch> getMatches(String line) {
-        List<WordMatch> result = Collections.emptyList();
-        LineToken lineToken = new LineToken(line);
-        while ((lineToken = nextToken(lineToken)) != null) {
-            String word = lineToken.getWordLowerCase();
-            WordMatch wordMatch = wordMatcher.getWordMatch(word);
-            if (wordMatch == null) {
-                continue;
+    public boolean mayMatch(LineBuffer buffer) {
+        String text = buffer.getText();
+        int length = text.length();
+        int endPos = 0;
+        while (true) {
+            int startPos = endPos;
+            while (startPos < length && !LineToken.isAlphanumericAt(text, startPos)) {
+                startPos++;
+            }
+            if (startPos >= length) {
+                return false;
+            }
+
+            endPos = startPos + 1;
+            while (endPos < length && LineToken.isAlphanumericAt(text, endPos)) {
+                endPos++;
             }
 
-            result = BasicLineMatcher.addWordMatch(result, lineToken, wordMatch.getReason(), wordMatch.getTemplate());
+            if (wordMatcher.findRule(text, startPos, endPos) >= 0) {
+                return true;
+            }
         }
-        return result;
     }
 
-    static LineToken nextToken(LineToken lineToken) {
-        String line = lineToken.getLine();
-        int startPos = lineToken.getEndPos();
+    @Override
+    public void findMatches(String line, int lineIndex, MatchBuffer matches) {
+        int length = line.length();
+        int endPos = 0;
+        while (true) {
+            int startPos = endPos;
+            while (startPos < length && !LineToken.isAlphanumericAt(line, startPos)) {
+                startPos++;
+            }
+            if (startPos >= length) {
+                return;
+            }
 
-        while (startPos < line.length() && !lineToken.isAlphanumericAt(startPos)) {
-            startPos++;
-        }
-        if (startPos >= line.length()) {
-            return null;
-        }
+            endPos = startPos + 1;
+            while (endPos < length && LineToken.isAlphanumericAt(line, endPos)) {
+                endPos++;
+            }
 
-        int endPos = startPos + 1;
-        while (endPos < line.length() && lineToken.isAlphanumericAt(endPos)) {
-            endPos++;
+            int rule = wordMatcher.findRule(line, startPos, endPos);
+            if (rule >= 0) {
+                matches.add(wordMatcher, rule, lineIndex, startPos, endPos);
+            }
         }
-        return new LineToken(line, startPos, endPos);
     }
 }
@@ -0,0 +1,64 @@
+package com.bt.code.egress.read;
+
+/**
+ * Lower case view of ASCII text, used instead of toLowerCase() copy of the text.
+ * Text with other chars is copied by String.toLowerCase(), to keep its semantics.
+ */
+public class LowerCaseView implements CharSequence {
+    private final CharSequence text;
+    private final int start;
+    private final int end;
+
+    private LowerCaseView(CharSequence text, int start, int end) {
+        this.text = text;
+        this.start = start;
+        this.end = end;
+    }
+
+    public static CharSequence of(String text) {
+        return of(text, 0, text.length());
+    }
+
+    public static CharSequence of(CharSequence text, int start, int end) {
+        return isAscii(text, start, end)
+                ? new LowerCaseView(text, start, end)
+                : text.subSequence(start, end).toString().toLowerCase();
+    }
+
+    public static boolean isAscii(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) >= 128) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static char fold(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return fold(text.charAt(start + index));
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new LowerCaseView(text, this.start + start, this.start + end);
+    }
+
+    @Override
+    public String toString() {
+        char[] chars = new char[length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = charAt(i);
+        }
+        return new String(chars);
+    }
+}
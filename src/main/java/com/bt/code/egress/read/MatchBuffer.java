@@ -0,0 +1,198 @@
+package com.bt.code.egress.read;
+
+import com.bt.code.egress.report.Stats;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Matches as parallel int arrays: line index, start and end in line, rule id.
+ * Buffer is reused for every line or file of a thread, so matching does not create objects per hit.
+ * Match becomes {@link WordMatch} only when it is reported, reason and template come from its rules by id.
+ */
+public class MatchBuffer {
+    private int size;
+    private int[] lines = new int[16];
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int[] rules = new int[16];
+    private MatchRules[] sources = new MatchRules[16];
+    // lines skipped by start chars since last flush, shared stats are not updated per line
+    private int skippedLines;
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(sources, 0, size, null);
+        size = 0;
+    }
+
+    public void lineSkipped() {
+        skippedLines++;
+    }
+
+    /**
+     * Add skipped lines to stats, called once per buffer or file.
+     */
+    public void flushSkippedLines() {
+        if (skippedLines > 0) {
+            Stats.linesSkipped(skippedLines);
+            skippedLines = 0;
+        }
+    }
+
+    public void add(MatchRules source, int rule, int line, int start, int end) {
+        if (size == lines.length) {
+            int capacity = size * 2;
+            lines = Arrays.copyOf(lines, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            rules = Arrays.copyOf(rules, capacity);
+            sources = Arrays.copyOf(sources, capacity);
+        }
+        lines[size] = line;
+        starts[size] = start;
+        ends[size] = end;
+        rules[size] = rule;
+        sources[size] = source;
+        size++;
+    }
+
+    public int getLine(int index) {
+        return lines[index];
+    }
+
+    public int getStart(int index) {
+        return starts[index];
+    }
+
+    public int getEnd(int index) {
+        return ends[index];
+    }
+
+    public String getReason(int index) {
+        return sources[index].getReason(rules[index]);
+    }
+
+    public String getTemplate(int index) {
+        return sources[index].getTemplate(rules[index]);
+    }
+
+    public WordMatch toWordMatch(int index, String line) {
+        return new WordMatch(new LineToken(line, starts[index], ends[index]),
+                getReason(index), getTemplate(index), null);
+    }
+
+    /**
+     * @return matches [from, to) of line
+     */
+    public List<WordMatch> toWordMatches(int from, int to, String line) {
+        if (from == to) {
+            return Collections.emptyList();
+        }
+        List<WordMatch> result = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            result.add(toWordMatch(i, line));
+        }
+        return result;
+    }
+
+    /**
+     * @return end of matches of same line as match from
+     */
+    public int getLineEnd(int from) {
+        int to = from;
+        while (to < size && lines[to] == lines[from]) {
+            to++;
+        }
+        return to;
+    }
+
+    /**
+     * Remove matches from index for which predicate is true, order of others is kept.
+     */
+    public void removeIf(int from, IntPredicate predicate) {
+        int to = from;
+        for (int i = from; i < size; i++) {
+            if (!predicate.test(i)) {
+                move(i, to++);
+            }
+        }
+        Arrays.fill(sources, to, size, null);
+        size = to;
+    }
+
+    /**
+     * Sort matches from index by line, keeping order within line, and remove duplicates of same rules:
+     * match of a word which is already matched with template, e.g. by value and by pattern.
+     */
+    public void groupByLine(int from) {
+        boolean sorted = true;
+        for (int i = from + 1; i < size && sorted; i++) {
+            sorted = lines[i - 1] <= lines[i];
+        }
+        if (!sorted) {
+            sortByLine(from);
+        }
+        int to = from;
+        for (int i = from; i < size; i++) {
+            if (!isDuplicate(from, to, i)) {
+                move(i, to++);
+            }
+        }
+        Arrays.fill(sources, to, size, null);
+        size = to;
+    }
+
+    /**
+     * @return true if match is a duplicate of one of kept matches [from, to) with template
+     */
+    private boolean isDuplicate(int from, int to, int index) {
+        for (int j = to - 1; j >= from && lines[j] == lines[index]; j--) {
+            if (sources[j] == sources[index] && starts[j] == starts[index] && ends[j] == ends[index]
+                    && StringUtils.isNotBlank(getTemplate(j))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void sortByLine(int from) {
+        int count = size - from;
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            // line in high bits, insertion order in low bits keeps sort stable
+            keys[i] = (long) lines[from + i] << 32 | i;
+        }
+        Arrays.sort(keys);
+        int[] oldLines = Arrays.copyOfRange(lines, from, size);
+        int[] oldStarts = Arrays.copyOfRange(starts, from, size);
+        int[] oldEnds = Arrays.copyOfRange(ends, from, size);
+        int[] oldRules = Arrays.copyOfRange(rules, from, size);
+        MatchRules[] oldSources = Arrays.copyOfRange(sources, from, size);
+        for (int i = 0; i < count; i++) {
+            int old = (int) keys[i];
+            lines[from + i] = oldLines[old];
+            starts[from + i] = oldStarts[old];
+            ends[from + i] = oldEnds[old];
+            rules[from + i] = oldRules[old];
+            sources[from + i] = oldSources[old];
+        }
+    }
+
+    private void move(int from, int to) {
+        if (from != to) {
+            lines[to] = lines[from];
+            starts[to] = starts[from];
+            ends[to] = ends[from];
+            rules[to] = rules[from];
+            sources[to] = sources[from];
+        }
+    }
+}
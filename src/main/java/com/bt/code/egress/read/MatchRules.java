@@ -0,0 +1,10 @@
+package com.bt.code.egress.read;
+
+/**
+ * Rules of matcher by id, so match keeps only int id and reason is built when match is reported.
+ */
+public interface MatchRules {
+    String getReason(int rule);
+
+    String getTemplate(int rule);
+}
@@ -0,0 +1,237 @@
+package com.bt.code.egress.read;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.regex.Pattern;
+
+/**
+ * ASCII chars, one of which must be in any matched text, used to skip lines which cannot match.
+ * Value gives its first char, pattern - first char of required literal or chars of leading atom of each alternative.
+ * Filter is disabled if any pattern has unknown chars. Not ASCII chars of line are always candidates.
+ */
+@Slf4j
+public class MatchStartChars {
+    private final boolean[] chars = new boolean[128];
+
+    private MatchStartChars() {
+    }
+
+    /**
+     * @return filter, null if it cannot be built
+     */
+    public static MatchStartChars of(Collection<String> values, Collection<Pattern> patterns) {
+        MatchStartChars startChars = new MatchStartChars();
+        for (String value : values) {
+            if (!value.isEmpty()) {
+                startChars.add(value.charAt(0));
+            }
+        }
+        for (Pattern pattern : patterns) {
+            String literal = PatternLiteral.extract(pattern);
+            if (literal != null) {
+                startChars.add(literal.charAt(0));
+            } else if (!startChars.addLeadingAtoms(pattern)) {
+                log.info("Config: no start chars filter, unknown start of pattern {}", pattern);
+                return null;
+            }
+        }
+        int count = 0;
+        for (boolean c : startChars.chars) {
+            count += c ? 1 : 0;
+        }
+        log.info("Config: {} ASCII start chars", count);
+        return startChars;
+    }
+
+    public boolean mayMatch(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= 128 || chars[LowerCaseView.fold(c)]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void add(char c) {
+        if (c < 128) {
+            chars[LowerCaseView.fold(c)] = true;
+        }
+    }
+
+    private void addRange(char from, char to) {
+        for (char c = from; c <= to && c < 128; c++) {
+            add(c);
+        }
+    }
+
+    /**
+     * Add chars of leading atom of each top level alternative.
+     *
+     * @return false if chars are unknown
+     */
+    private boolean addLeadingAtoms(Pattern pattern) {
+        if (pattern.flags() != 0 || pattern.pattern().contains("\\Q")) {
+            return false;
+        }
+        String regex = pattern.pattern();
+        int start = 0;
+        int depth = 0;
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                i = skipClass(regex, i + 1);
+                if (i < 0) {
+                    return false;
+                }
+                continue;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                if (!addLeadingAtom(regex.substring(start, i))) {
+                    return false;
+                }
+                start = i + 1;
+            }
+            i++;
+        }
+        return addLeadingAtom(regex.substring(start));
+    }
+
+    /**
+     * @param i position after opening [
+     * @return position after class, -1 if class is not closed
+     */
+    private static int skipClass(String regex, int i) {
+        int depth = 0;
+        // leading ] or ^] is a char of the class
+        if (i < regex.length() && regex.charAt(i) == '^') {
+            i++;
+        }
+        if (i < regex.length() && regex.charAt(i) == ']') {
+            i++;
+        }
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                depth++;
+            } else if (c == ']') {
+                if (depth == 0) {
+                    return i + 1;
+                }
+                depth--;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * Add chars of leading atom of alternative: literal char, \d, \w, \s or simple [...] class.
+     *
+     * @return false if chars are unknown
+     */
+    private boolean addLeadingAtom(String regex) {
+        int i = 0;
+        // zero width prefix
+        while (true) {
+            if (regex.startsWith("^", i)) {
+                i++;
+            } else if (regex.startsWith("\\b", i) || regex.startsWith("\\A", i)) {
+                i += 2;
+            } else {
+                break;
+            }
+        }
+        if (i >= regex.length()) {
+            return false;
+        }
+        int atomEnd;
+        char c = regex.charAt(i);
+        if (c == '\\' && i + 1 < regex.length()) {
+            atomEnd = i + 2;
+            if (!addEscape(regex.charAt(i + 1))) {
+                return false;
+            }
+        } else if (c == '[') {
+            atomEnd = addClass(regex, i + 1);
+            if (atomEnd < 0) {
+                return false;
+            }
+        } else if ("^$.|?*+()[]{}".indexOf(c) < 0) {
+            atomEnd = i + 1;
+            add(c);
+        } else {
+            return false;
+        }
+        // optional atom may be skipped
+        return atomEnd >= regex.length()
+                || !(regex.charAt(atomEnd) == '?' || regex.charAt(atomEnd) == '*' || regex.startsWith("{0", atomEnd));
+    }
+
+    private boolean addEscape(char c) {
+        if (c == 'd') {
+            addRange('0', '9');
+        } else if (c == 'w') {
+            addRange('a', 'z');
+            addRange('0', '9');
+            add('_');
+        } else if (c == 's') {
+            add(' ');
+            addRange('\t', '\r');
+        } else if (!Character.isLetterOrDigit(c)) {
+            add(c);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return position after class, -1 if class is not simple
+     */
+    private int addClass(String regex, int i) {
+        if (i < regex.length() && regex.charAt(i) == '^') {
+            return -1;
+        }
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == ']') {
+                return i + 1;
+            }
+            if (c == '[' || c == '&') {
+                return -1;
+            }
+            if (c == '\\') {
+                if (i + 1 >= regex.length() || !addEscape(regex.charAt(i + 1))) {
+                    return -1;
+                }
+                i += 2;
+            } else if (i + 2 < regex.length() && regex.charAt(i + 1) == '-' && regex.charAt(i + 2) != ']') {
+                char to = regex.charAt(i + 2);
+                if (to == '\\' || to == '[') {
+                    return -1;
+                }
+                addRange(c, to);
+                i += 3;
+            } else {
+                add(c);
+                i++;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,20 @@
+package com.bt.code.egress.read;
+
+import lombok.Getter;
+
+import java.util.regex.Pattern;
+
+/**
+ * Pattern evaluation is stopped, file with such text fails instead of blocking the run.
+ */
+public class PatternBudgetExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    @Getter
+    private final Pattern pattern;
+
+    public PatternBudgetExceededException(Pattern pattern, int textLength) {
+        super("Pattern exceeded step budget on text of " + textLength + " chars: " + pattern);
+        this.pattern = pattern;
+    }
+}
@@ -0,0 +1,97 @@
+package com.bt.code.egress.read;
+
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Config check for patterns with super-linear backtracking.
+ * Pattern is matched at start of adversarial texts, repeated char which it may accept followed by a char
+ * which fails it, of two lengths. Steps are counted by chars read, for linear pattern they grow twice.
+ */
+@Slf4j
+@UtilityClass
+public class PatternCheck {
+    private static final int LENGTH = 40;
+    private static final long MAX_STEPS = 200_000;
+
+    /**
+     * Log warning for each super-linear pattern.
+     *
+     * @return super-linear patterns
+     */
+    public List<Pattern> warnSuperLinear(Collection<Pattern> patterns) {
+        List<Pattern> result = new ArrayList<>();
+        for (Pattern pattern : patterns) {
+            if (isSuperLinear(pattern)) {
+                log.warn("Config: pattern may have catastrophic backtracking on long text: {}", pattern);
+                result.add(pattern);
+            }
+        }
+        return result;
+    }
+
+    static boolean isSuperLinear(Pattern pattern) {
+        for (String unit : getUnits(pattern)) {
+            long steps = countSteps(pattern, unit, LENGTH);
+            long doubleSteps = countSteps(pattern, unit, LENGTH * 2);
+            if (doubleSteps > MAX_STEPS || doubleSteps > 3 * steps && doubleSteps > 10L * LENGTH * 2) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return steps of matching repeated unit followed by failing char, more than max if stopped
+     */
+    private static long countSteps(Pattern pattern, String unit, int length) {
+        StringBuilder text = new StringBuilder(length + 1);
+        while (text.length() < length) {
+            text.append(unit);
+        }
+        text.append('\u0001');
+        BudgetCharSequence budgetText = new BudgetCharSequence(text, pattern, MAX_STEPS, null);
+        try {
+            pattern.matcher(budgetText).lookingAt();
+        } catch (PatternBudgetExceededException | StackOverflowError e) {
+            return MAX_STEPS + 1;
+        }
+        return MAX_STEPS - budgetText.getRemaining();
+    }
+
+    /**
+     * Repeated units: usual word, number and separator chars, letters and digits of pattern, and pairs of them.
+     */
+    private static Set<String> getUnits(Pattern pattern) {
+        Set<Character> chars = new LinkedHashSet<>();
+        for (char c : "a0 .-_@".toCharArray()) {
+            chars.add(c);
+        }
+        String regex = pattern.pattern();
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                // escaped class like \d is not a literal
+                i++;
+            } else if (Character.isLetterOrDigit(c)) {
+                chars.add(Character.toLowerCase(c));
+            }
+        }
+        Set<String> units = new LinkedHashSet<>();
+        for (char c : chars) {
+            units.add(String.valueOf(c));
+        }
+        List<Character> list = new ArrayList<>(chars);
+        for (int i = 0; i + 1 < list.size() && i < 10; i++) {
+            units.add("" + list.get(i) + list.get(i + 1));
+        }
+        return units;
+    }
+}
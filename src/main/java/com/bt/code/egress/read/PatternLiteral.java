@@ -0,0 +1,182 @@
+package com.bt.code.egress.read;
+
+import lombok.experimental.UtilityClass;
+
+import java.util.regex.Pattern;
+
+/**
+ * Extract literal which is contained in any match of pattern, used to skip pattern on text without the literal.
+ * Extraction is conservative: only top level sequence of plain chars is taken, any doubt gives no literal.
+ */
+@UtilityClass
+public class PatternLiteral {
+    private static final String META = "\\^$.|?*+()[]{}";
+    // quoting and inline flags may change meaning of chars anywhere in pattern
+    private static final Pattern UNSUPPORTED = Pattern.compile("\\\\Q|\\(\\?[-a-zA-Z]");
+
+    /**
+     * @return longest required literal, null if none
+     */
+    public String extract(Pattern pattern) {
+        if (pattern.flags() != 0 || UNSUPPORTED.matcher(pattern.pattern()).find()) {
+            return null;
+        }
+        try {
+            return extract(pattern.pattern());
+        } catch (IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    String extract(String regex) {
+        String best = null;
+        StringBuilder run = new StringBuilder();
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '|') {
+                return null;
+            } else if (c == '\\') {
+                char next = regex.charAt(i + 1);
+                if (!Character.isLetterOrDigit(next)) {
+                    run.append(next);
+                    i += 2;
+                } else {
+                    best = longest(best, run);
+                    i = skipEscape(regex, i);
+                }
+            } else if (c == '?' || c == '*' || c == '+' || c == '{') {
+                boolean optional = c == '?' || c == '*' || (c == '{' && regex.charAt(i + 1) == '0');
+                i = skipQuantifier(regex, i);
+                if (optional) {
+                    // previous atom is optional, it was char of the run or run is already empty
+                    if (run.length() > 0) {
+                        run.setLength(run.length() - 1);
+                    }
+                }
+                best = longest(best, run);
+            } else if (c == '(') {
+                best = longest(best, run);
+                i = skipGroup(regex, i);
+            } else if (c == '[') {
+                best = longest(best, run);
+                i = skipClass(regex, i);
+            } else if (META.indexOf(c) >= 0) {
+                best = longest(best, run);
+                i++;
+            } else {
+                run.append(c);
+                i++;
+            }
+        }
+        return longest(best, run);
+    }
+
+    private String longest(String best, StringBuilder run) {
+        String result = best;
+        if (run.length() > 0 && (best == null || run.length() > best.length())) {
+            result = run.toString();
+        }
+        run.setLength(0);
+        return result;
+    }
+
+    private int skipQuantifier(String regex, int i) {
+        if (regex.charAt(i) == '{') {
+            i = indexOf(regex, '}', i);
+        }
+        i++;
+        // lazy or possessive quantifier
+        if (i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) {
+            i++;
+        }
+        return i;
+    }
+
+    private int skipEscape(String regex, int i) {
+        char c = regex.charAt(i + 1);
+        i += 2;
+        if ((c == 'p' || c == 'P' || c == 'x' || c == 'N') && i < regex.length() && regex.charAt(i) == '{') {
+            return indexOf(regex, '}', i) + 1;
+        }
+        if (c == 'k') {
+            return indexOf(regex, '>', i) + 1;
+        }
+        if (c == 'p' || c == 'P' || c == 'c') {
+            return i + 1;
+        }
+        if (c == 'x') {
+            return i + 2;
+        }
+        if (c == 'u') {
+            return i + 4;
+        }
+        if (c >= '0' && c <= '9') {
+            // octal char or back reference
+            while (i < regex.length() && Character.isDigit(regex.charAt(i))) {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    private int indexOf(String regex, char c, int from) {
+        int i = regex.indexOf(c, from);
+        if (i < 0) {
+            throw new IndexOutOfBoundsException("No closing " + c);
+        }
+        return i;
+    }
+
+    private int skipClass(String regex, int i) {
+        int depth = 0;
+        i++;
+        // leading ] or ^] is a char of the class
+        if (regex.charAt(i) == '^') {
+            i++;
+        }
+        if (regex.charAt(i) == ']') {
+            i++;
+        }
+        while (true) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i = skipEscape(regex, i);
+                continue;
+            }
+            if (c == '[') {
+                depth++;
+            } else if (c == ']') {
+                if (depth == 0) {
+                    return i + 1;
+                }
+                depth--;
+            }
+            i++;
+        }
+    }
+
+    private int skipGroup(String regex, int i) {
+        int depth = 0;
+        while (true) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i = skipEscape(regex, i);
+                continue;
+            }
+            if (c == '[') {
+                i = skipClass(regex, i);
+                continue;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+                if (depth == 0) {
+                    return i + 1;
+                }
+            }
+            i++;
+        }
+    }
+}
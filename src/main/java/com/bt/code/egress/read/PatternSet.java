@@ -0,0 +1,412 @@
+package com.bt.code.egress.read;
+
+import com.bt.code.egress.report.Stats;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Patterns with templates, evaluated together.
+ * Optimization: patterns are joined into one union pattern "(p1)|(p2)|...", which scans text once.
+ * No union match means none of joined patterns matches, so they are skipped.
+ * Union match tells position of the leftmost match, so joined patterns start search from it,
+ * or, for whole text match, which pattern matches first.
+ * Patterns which may behave differently inside union (flags, back references etc.) are evaluated separately.
+ * Patterns with required literal are not joined, they are evaluated only on text containing the literal.
+ * Optionally each evaluation has a step budget, to stop catastrophic backtracking.
+ * Union reads each position once per joined pattern, so its budget is scaled by number of joined patterns.
+ * In buffer mode budget is given to each line region by length of line, lines do not share it.
+ */
+@Slf4j
+public class PatternSet {
+    private static final Pattern UNSAFE_IN_UNION = Pattern.compile(
+            "\\\\[1-9]|\\\\k<|\\\\G|\\\\Q|\\(\\?[-a-zA-Z]|\\(\\?<[a-zA-Z]");
+
+    private final Map<Pattern, String> templates;
+    private final Pattern[] patterns;
+    private final Map<Pattern, Integer> indexes = new HashMap<>();
+    // required literal of pattern, null if none
+    private final String[] literals;
+    // group index of pattern in union, -1 if pattern is not in union
+    private final int[] unionGroups;
+    private final Pattern union;
+    // number of patterns joined into union
+    private final int unionSize;
+    // chars read by regex engine per char of text, 0 - unlimited
+    private final int stepsPerChar;
+    private final Set<Pattern> overBudget = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    public PatternSet(Map<Pattern, String> patterns) {
+        this(patterns, 0);
+    }
+
+    /**
+     * @param stepsPerChar budget of pattern evaluation on a text, see {@link BudgetCharSequence}
+     */
+    public PatternSet(Map<Pattern, String> patterns, int stepsPerChar) {
+        this.templates = patterns;
+        this.stepsPerChar = stepsPerChar;
+        this.patterns = patterns.keySet().toArray(new Pattern[0]);
+        this.literals = new String[this.patterns.length];
+        int withLiteral = 0;
+        for (int i = 0; i < this.patterns.length; i++) {
+            indexes.put(this.patterns[i], i);
+            literals[i] = PatternLiteral.extract(this.patterns[i]);
+            if (literals[i] != null) {
+                withLiteral++;
+            }
+        }
+        if (withLiteral > 0) {
+            log.info("Config: {} of {} patterns have required literal", withLiteral, this.patterns.length);
+        }
+        this.unionGroups = new int[this.patterns.length];
+        this.union = buildUnion(this.patterns, literals, unionGroups);
+        this.unionSize = (int) Arrays.stream(unionGroups).filter(group -> group >= 0).count();
+        PatternCheck.warnSuperLinear(patterns.keySet());
+    }
+
+    private static Pattern buildUnion(Pattern[] patterns, String[] literals, int[] unionGroups) {
+        Arrays.fill(unionGroups, -1);
+        StringBuilder regex = new StringBuilder();
+        int group = 1;
+        int joined = 0;
+        for (int i = 0; i < patterns.length; i++) {
+            Pattern pattern = patterns[i];
+            if (literals[i] != null || pattern.flags() != 0 || UNSAFE_IN_UNION.matcher(pattern.pattern()).find()) {
+                continue;
+            }
+            int groupCount = pattern.matcher("").groupCount();
+            try {
+                if (Pattern.compile("(" + pattern.pattern() + ")").matcher("").groupCount() != groupCount + 1) {
+                    continue;
+                }
+            } catch (PatternSyntaxException e) {
+                continue;
+            }
+            if (joined++ > 0) {
+                regex.append('|');
+            }
+            regex.append('(').append(pattern.pattern()).append(')');
+            unionGroups[i] = group;
+            group += groupCount + 1;
+        }
+        if (joined < 2) {
+            Arrays.fill(unionGroups, -1);
+            return null;
+        }
+        try {
+            Pattern union = Pattern.compile(regex.toString());
+            log.info("Config: {} of {} patterns joined into union", joined, patterns.length);
+            return union;
+        } catch (PatternSyntaxException e) {
+            log.warn("Config: failed to join patterns into union, evaluate separately", e);
+            Arrays.fill(unionGroups, -1);
+            return null;
+        }
+    }
+
+    private Matcher matcher(Pattern pattern, CharSequence text) {
+        if (stepsPerChar <= 0) {
+            return pattern.matcher(text);
+        }
+        return pattern.matcher(new BudgetCharSequence(text, pattern, budget(pattern, text.length()), overBudget));
+    }
+
+    private long budget(Pattern pattern, int length) {
+        long budget = Math.max(BudgetCharSequence.MIN_BUDGET, (long) stepsPerChar * length);
+        return pattern == union ? budget * unionSize : budget;
+    }
+
+    /**
+     * Matcher over text of buffer, evaluated line by line, each line region has its own budget.
+     */
+    private class RegionMatcher {
+        private final Pattern pattern;
+        private final Matcher matcher;
+        // null if budget is unlimited
+        private final BudgetCharSequence budgeted;
+
+        RegionMatcher(Pattern pattern, CharSequence text) {
+            this.pattern = pattern;
+            this.budgeted = stepsPerChar <= 0 ? null : new BudgetCharSequence(text, pattern, 0, overBudget);
+            this.matcher = pattern.matcher(budgeted != null ? budgeted : text);
+        }
+
+        Matcher region(LineBuffer buffer, int line) {
+            int start = buffer.getLineStart(line);
+            int end = buffer.getLineEnd(line);
+            if (budgeted != null) {
+                budgeted.reset(budget(pattern, end - start));
+            }
+            return matcher.region(start, end);
+        }
+    }
+
+    public boolean isEmpty() {
+        return patterns.length == 0;
+    }
+
+    public String getTemplate(Pattern pattern) {
+        return templates.get(pattern);
+    }
+
+    public int size() {
+        return patterns.length;
+    }
+
+    public Pattern getPattern(int index) {
+        return patterns[index];
+    }
+
+    /**
+     * @return index of pattern in set, -1 if not found
+     */
+    public int getIndex(Pattern pattern) {
+        return indexes.getOrDefault(pattern, -1);
+    }
+
+    /**
+     * Find all matches of every pattern, pattern by pattern, and accumulate them into result.
+     */
+    public <T> T findAll(CharSequence text, T result, BiFunction<T, Matcher, T> accumulator) {
+        int from = findUnion(text);
+        int skipped = 0;
+        for (int i = 0; i < patterns.length; i++) {
+            if (unionGroups[i] >= 0 && from < 0) {
+                continue;
+            }
+            if (literals[i] != null && indexOf(text, literals[i]) < 0) {
+                skipped++;
+                continue;
+            }
+            long startedAt = startTimer();
+            Matcher matcher = matcher(patterns[i], text);
+            if (matcher.find(unionGroups[i] >= 0 ? from : 0)) {
+                do {
+                    result = accumulator.apply(result, matcher);
+                } while (matcher.find());
+            }
+            stopTimer(patterns[i], startedAt);
+        }
+        Stats.patternsSkippedByLiteral(skipped);
+        return result;
+    }
+
+    public interface LineMatchConsumer {
+        void accept(int lineIndex, Matcher matcher);
+    }
+
+    /**
+     * Find all matches of every pattern in every line of buffer, pattern by pattern.
+     * Each line is matched as region of text, so anchors and boundaries work as for separate line.
+     * Pattern with required literal is evaluated only on lines containing the literal.
+     */
+    public void findAll(LineBuffer buffer, CharSequence text, LineMatchConsumer consumer) {
+        boolean[] unionLines = null;
+        int skipped = 0;
+        for (int i = 0; i < patterns.length; i++) {
+            if (unionGroups[i] >= 0 && unionLines == null) {
+                long unionStartedAt = startTimer();
+                unionLines = findUnionLines(buffer, text);
+                stopTimer(union, unionStartedAt);
+            }
+            long startedAt = startTimer();
+            RegionMatcher matcher = new RegionMatcher(patterns[i], text);
+            if (literals[i] != null) {
+                int evaluated = 0;
+                int pos = indexOf(text, literals[i], 0);
+                while (pos >= 0) {
+                    int line = buffer.getLineIndex(pos);
+                    findAll(buffer, line, matcher, consumer);
+                    evaluated++;
+                    pos = indexOf(text, literals[i], buffer.getLineEnd(line) + 1);
+                }
+                skipped += buffer.size() - evaluated;
+                stopTimer(patterns[i], startedAt);
+                continue;
+            }
+            for (int line = 0; line < buffer.size(); line++) {
+                if (unionGroups[i] < 0 || unionLines[line]) {
+                    findAll(buffer, line, matcher, consumer);
+                }
+            }
+            stopTimer(patterns[i], startedAt);
+        }
+        Stats.patternsSkippedByLiteral(skipped);
+    }
+
+    /**
+     * @return false if no pattern can match any line of buffer
+     */
+    public boolean mayMatch(LineBuffer buffer, CharSequence text) {
+        boolean unionChecked = false;
+        for (int i = 0; i < patterns.length; i++) {
+            if (literals[i] != null) {
+                if (indexOf(text, literals[i], 0) >= 0) {
+                    return true;
+                }
+            } else if (unionGroups[i] < 0) {
+                return true;
+            } else if (!unionChecked) {
+                unionChecked = true;
+                long startedAt = startTimer();
+                boolean found = findUnionLine(buffer, text);
+                stopTimer(union, startedAt);
+                if (found) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void findAll(LineBuffer buffer, int line, RegionMatcher regionMatcher, LineMatchConsumer consumer) {
+        Matcher matcher = regionMatcher.region(buffer, line);
+        while (matcher.find()) {
+            consumer.accept(line, matcher);
+        }
+    }
+
+    private boolean findUnionLine(LineBuffer buffer, CharSequence text) {
+        RegionMatcher matcher = new RegionMatcher(union, text);
+        for (int line = 0; line < buffer.size(); line++) {
+            if (matcher.region(buffer, line).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean[] findUnionLines(LineBuffer buffer, CharSequence text) {
+        boolean[] lines = new boolean[buffer.size()];
+        RegionMatcher matcher = new RegionMatcher(union, text);
+        for (int line = 0; line < buffer.size(); line++) {
+            lines[line] = matcher.region(buffer, line).find();
+        }
+        return lines;
+    }
+
+    /**
+     * @return matcher after find() of first pattern found in text, null if none
+     */
+    public Matcher findFirst(CharSequence text) {
+        int from = findUnion(text);
+        int skipped = 0;
+        Matcher result = null;
+        for (int i = 0; i < patterns.length && result == null; i++) {
+            if (unionGroups[i] >= 0 && from < 0) {
+                continue;
+            }
+            if (literals[i] != null && indexOf(text, literals[i]) < 0) {
+                skipped++;
+                continue;
+            }
+            long startedAt = startTimer();
+            Matcher matcher = matcher(patterns[i], text);
+            if (matcher.find(unionGroups[i] >= 0 ? from : 0)) {
+                result = matcher;
+            }
+            stopTimer(patterns[i], startedAt);
+        }
+        Stats.patternsSkippedByLiteral(skipped);
+        return result;
+    }
+
+    /**
+     * @return matcher after matches() of first pattern matching whole text, null if none
+     */
+    public Matcher matchFirst(CharSequence text) {
+        int unionGroup = -1;
+        if (union != null) {
+            long startedAt = startTimer();
+            Matcher unionMatcher = matcher(union, text);
+            if (unionMatcher.matches()) {
+                for (int i = 0; i < patterns.length && unionGroup < 0; i++) {
+                    if (unionGroups[i] >= 0 && unionMatcher.start(unionGroups[i]) >= 0) {
+                        unionGroup = unionGroups[i];
+                    }
+                }
+            }
+            stopTimer(union, startedAt);
+        }
+        int skipped = 0;
+        Matcher result = null;
+        for (int i = 0; i < patterns.length && result == null; i++) {
+            if (unionGroups[i] >= 0 && unionGroups[i] != unionGroup) {
+                continue;
+            }
+            if (literals[i] != null && indexOf(text, literals[i]) < 0) {
+                skipped++;
+                continue;
+            }
+            long startedAt = startTimer();
+            Matcher matcher = matcher(patterns[i], text);
+            if (matcher.matches()) {
+                result = matcher;
+            }
+            stopTimer(patterns[i], startedAt);
+        }
+        Stats.patternsSkippedByLiteral(skipped);
+        return result;
+    }
+
+    static int indexOf(CharSequence text, String literal) {
+        return indexOf(text, literal, 0);
+    }
+
+    static int indexOf(CharSequence text, String literal, int from) {
+        if (text instanceof String) {
+            return ((String) text).indexOf(literal, from);
+        }
+        char first = literal.charAt(0);
+        int max = text.length() - literal.length();
+        for (int i = from; i <= max; i++) {
+            if (text.charAt(i) == first && regionMatches(text, i, literal)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionMatches(CharSequence text, int start, String literal) {
+        for (int j = 1; j < literal.length(); j++) {
+            if (text.charAt(start + j) != literal.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return start of leftmost match of union, -1 if none
+     */
+    private int findUnion(CharSequence text) {
+        if (union == null) {
+            return 0;
+        }
+        long startedAt = startTimer();
+        Matcher matcher = matcher(union, text);
+        int start = matcher.find() ? matcher.start() : -1;
+        stopTimer(union, startedAt);
+        return start;
+    }
+
+    private static long startTimer() {
+        return RuleProfiler.isEnabled() ? System.nanoTime() : 0;
+    }
+
+    private static void stopTimer(Pattern pattern, long startedAt) {
+        if (startedAt != 0) {
+            RuleProfiler.evaluated(pattern, System.nanoTime() - startedAt);
+        }
+    }
+}
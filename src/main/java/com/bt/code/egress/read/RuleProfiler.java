@@ -0,0 +1,125 @@
+package com.bt.code.egress.read;
+
+import com.bt.code.egress.file.LocalFiles;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Opt-in profile of matching rules: evaluations and time of each pattern, hits of each value and pattern.
+ * Values are searched all at once by automaton or dictionary, so they have hits only.
+ * Rules of a set are registered at config load, so rules which never matched are reported as dead.
+ */
+@UtilityClass
+@Slf4j
+public class RuleProfiler {
+    private static final CSVFormat CSV_FORMAT = CSVFormat.DEFAULT.withHeader(
+            "Section", "Rule Set", "Rule", "Evaluations", "Hits", "Nanos");
+    // evaluated pattern which is not registered, e.g. union of patterns
+    private static final String OTHER_SET = "Other";
+
+    @Getter
+    @Setter
+    private volatile boolean enabled;
+    private final Map<Pattern, String> patternSets = new ConcurrentHashMap<>();
+    private final Map<String, Rule> rules = new ConcurrentHashMap<>();
+
+    @RequiredArgsConstructor
+    private static class Rule {
+        final String ruleSet;
+        final String reason;
+        final LongAdder evaluations = new LongAdder();
+        final LongAdder hits = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+    }
+
+    public void register(String ruleSet, Collection<String> values, Collection<Pattern> patterns) {
+        if (!enabled) {
+            return;
+        }
+        values.forEach(value -> getRule(ruleSet, "Value " + value));
+        patterns.forEach(pattern -> {
+            patternSets.put(pattern, ruleSet);
+            getRule(ruleSet, "Pattern " + pattern);
+        });
+    }
+
+    /**
+     * @param reason reason of match, "Value ..." or "Pattern ..."
+     */
+    public void hit(String ruleSet, String reason) {
+        getRule(ruleSet, reason).hits.increment();
+    }
+
+    public void evaluated(Pattern pattern, long nanos) {
+        Rule rule = getRule(patternSets.getOrDefault(pattern, OTHER_SET), "Pattern " + pattern);
+        rule.evaluations.increment();
+        rule.nanos.add(nanos);
+    }
+
+    private Rule getRule(String ruleSet, String reason) {
+        return rules.computeIfAbsent(ruleSet + "\n" + reason, k -> new Rule(ruleSet, reason));
+    }
+
+    /**
+     * Write rules sorted by cost, then dead rules which never matched.
+     */
+    public void dump(Path path) {
+        if (!enabled) {
+            return;
+        }
+        List<Rule> costly = rules.values().stream()
+                .filter(rule -> rule.evaluations.sum() > 0 || rule.hits.sum() > 0)
+                .sorted(Comparator.comparingLong((Rule rule) -> rule.nanos.sum()).reversed()
+                        .thenComparing(rule -> -rule.hits.sum())
+                        .thenComparing(rule -> rule.ruleSet)
+                        .thenComparing(rule -> rule.reason))
+                .collect(Collectors.toList());
+        List<Rule> dead = rules.values().stream()
+                .filter(rule -> rule.hits.sum() == 0 && !OTHER_SET.equals(rule.ruleSet))
+                .sorted(Comparator.comparing((Rule rule) -> rule.ruleSet).thenComparing(rule -> rule.reason))
+                .collect(Collectors.toList());
+        log.info("Rule profile: {} rules used, {} dead, to {}", costly.size(), dead.size(), path);
+        try {
+            LocalFiles.createDirectories(path.getParent());
+            try (BufferedWriter writer = LocalFiles.newBufferedWriter(path)) {
+                try (CSVPrinter printer = new CSVPrinter(writer, CSV_FORMAT)) {
+                    for (Rule rule : costly) {
+                        print(printer, "Cost", rule);
+                    }
+                    for (Rule rule : dead) {
+                        print(printer, "Dead", rule);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write rule profile " + path, e);
+        }
+    }
+
+    private void print(CSVPrinter printer, String section, Rule rule) throws IOException {
+        printer.printRecord(section, rule.ruleSet, rule.reason, rule.evaluations.sum(), rule.hits.sum(), rule.nanos.sum());
+    }
+
+    public void reset() {
+        enabled = false;
+        patternSets.clear();
+        rules.clear();
+    }
+}
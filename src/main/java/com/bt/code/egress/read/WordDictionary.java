@@ -0,0 +1,110 @@
+package com.bt.code.egress.read;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lowercase words with templates, looked up by part of text without creating substring.
+ * Optimization: open addressing hash table, ASCII upper case is folded inside hash and equals,
+ * so line does not need to be lower cased. Words with other chars are lower cased before lookup.
+ * Memory: words are packed into one char array, each distinct template is stored once,
+ * hash table keeps only word indexes.
+ */
+public class WordDictionary {
+    // word i is chars[offsets[i]..offsets[i+1])
+    private final char[] chars;
+    private final int[] offsets;
+    private final int[] templateIds;
+    private final String[] templates;
+    // word index + 1 by slot, 0 for empty slot
+    private final int[] table;
+    private final int mask;
+
+    public WordDictionary(Map<String, String> values) {
+        int size = values.size();
+        this.chars = new char[values.keySet().stream().mapToInt(String::length).sum()];
+        this.offsets = new int[size + 1];
+        this.templateIds = new int[size];
+        int capacity = Integer.highestOneBit(Math.max(4, size * 2 - 1)) << 1;
+        this.table = new int[capacity];
+        this.mask = capacity - 1;
+
+        Map<String, Integer> templateIdByTemplate = new HashMap<>();
+        int index = 0;
+        int offset = 0;
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            String key = entry.getKey();
+            key.getChars(0, key.length(), chars, offset);
+            offsets[index] = offset;
+            offset += key.length();
+            templateIds[index] = templateIdByTemplate.computeIfAbsent(entry.getValue(), t -> templateIdByTemplate.size());
+            int slot = hash(key, 0, key.length()) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = index + 1;
+            index++;
+        }
+        offsets[size] = offset;
+
+        this.templates = new String[templateIdByTemplate.size()];
+        templateIdByTemplate.forEach((template, id) -> templates[id] = template);
+    }
+
+    public int size() {
+        return templateIds.length;
+    }
+
+    /**
+     * @return index of word text[start, end) lower cased, -1 if not found
+     */
+    public int find(CharSequence text, int start, int end) {
+        if (templateIds.length == 0) {
+            return -1;
+        }
+        if (!LowerCaseView.isAscii(text, start, end)) {
+            String word = text.subSequence(start, end).toString().toLowerCase();
+            return probe(word, 0, word.length());
+        }
+        return probe(text, start, end);
+    }
+
+    private int probe(CharSequence text, int start, int end) {
+        int length = end - start;
+        int slot = hash(text, start, end) & mask;
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            int index = entry - 1;
+            if (offsets[index + 1] - offsets[index] == length && equalsFolded(offsets[index], text, start, length)) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public String getKey(int index) {
+        return new String(chars, offsets[index], offsets[index + 1] - offsets[index]);
+    }
+
+    public String getTemplate(int index) {
+        return templates[templateIds[index]];
+    }
+
+    private boolean equalsFolded(int offset, CharSequence text, int start, int length) {
+        for (int i = 0; i < length; i++) {
+            if (chars[offset + i] != LowerCaseView.fold(text.charAt(start + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(CharSequence text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + LowerCaseView.fold(text.charAt(i));
+        }
+        return h ^ (h >>> 16);
+    }
+}
@@ -2,4 +2,15 @@ package com.bt.code.egress.read;
 
 public interface WordMatcher {
     WordMatch getWordMatch(String word);
+
+    /**
+     * Match word text[start, end), word is lower cased by matcher.
+     */
+    default WordMatch getWordMatch(CharSequence text, int start, int end) {
+        return getWordMatch(text.subSequence(start, end).toString().toLowerCase());
+    }
+
+    default boolean matches(CharSequence text, int start, int end) {
+        return getWordMatch(text, start, end) != null;
+    }
 }
@@ -16,7 +16,7 @@ public class ReportCollector implements TextMatched.Listener {
         log.info("Matched: {}", textMatched);
         reportLines.add(new Report.ReportLine(
                 textMatched.getAllowed(),
-                textMatched.getLineToken().getWordLowerCase(),
+                textMatched.getText(),
                 textMatched.getContext(),
                 textMatched.getLineLocation().getFile() == null ? null : textMatched.getLineLocation().getFile().replaceAll("\\\\", "/"),
                 textMatched.getLineLocation().getLineNum(),
@@ -44,21 +44,23 @@ public class ReportHelper {
     private final int contextMinCompareLength;
 
     public String getContext(LineToken lineToken) {
-        String line = lineToken.getLine();
+        return getContext(lineToken.getLine(), lineToken.getStartPos(), lineToken.getEndPos());
+    }
 
-        int startPos = lineToken.getStartPos() - contextKeepLength;
+    public String getContext(String line, int tokenStartPos, int tokenEndPos) {
+        int startPos = tokenStartPos - contextKeepLength;
         if (startPos < 0 || (startPos > 0 && startPos - WRAP.length() < 0)) {
             startPos = 0;
         }
-        while (startPos < lineToken.getStartPos() - 1 && isWhiteSpace(line.charAt(startPos))) {
+        while (startPos < tokenStartPos - 1 && isWhiteSpace(line.charAt(startPos))) {
             startPos++;
         }
 
-        int endPos = lineToken.getEndPos() + contextKeepLength;
+        int endPos = tokenEndPos + contextKeepLength;
         if (endPos > line.length() || (endPos < line.length() && endPos + WRAP.length() > line.length())) {
             endPos = line.length();
         }
-        while (endPos > lineToken.getEndPos() + 1 && isWhiteSpace(line.charAt(endPos - 1))) {
+        while (endPos > tokenEndPos + 1 && isWhiteSpace(line.charAt(endPos - 1))) {
             endPos--;
         }
 
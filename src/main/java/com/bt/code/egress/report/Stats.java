@@ -21,7 +21,7 @@ public class Stats {
         return value == null ? 0L : value.get();
     }
 
-    public void increment(String name, int byValue) {
+    public void increment(String name, long byValue) {
         AtomicLong value = counters.computeIfAbsent(name, k -> new AtomicLong());
         value.addAndGet(byValue);
     }
@@ -54,11 +54,11 @@ public class Stats {
         increment("Changed Csv Column Template Files");
     }
 
-    public void bytesRead(int bytes) {
+    public void bytesRead(long bytes) {
         increment("Read Bytes", bytes);
     }
 
-    public void linesRead(int lines) {
+    public void linesRead(long lines) {
         increment("Read Lines", lines);
     }
 
@@ -66,10 +66,18 @@ public class Stats {
         increment("Failed Files");
     }
 
+    public void fileClean() {
+        increment("Clean Files");
+    }
+
     public void fileIgnored() {
         increment("Ignored Files");
     }
 
+    public void fileBinary() {
+        increment("Skipped Binary Files");
+    }
+
     public void folderIgnored() {
         increment("Ignored Folders");
     }
@@ -86,6 +94,20 @@ public class Stats {
         increment("Words Conflicts");
     }
 
+    public void patternsSkippedByLiteral(int byValue) {
+        if (byValue > 0) {
+            increment("Patterns Skipped by Literal", byValue);
+        }
+    }
+
+    public void linesSkipped(int lines) {
+        increment("Lines Skipped by Start Chars", lines);
+    }
+
+    public void patternOverBudget() {
+        increment("Patterns Over Budget");
+    }
+
     public void dump() {
         log.info("Counters: \n\t{}", new TreeMap<>(Stats.getCounters()).entrySet().stream()
                 .map(String::valueOf).collect(Collectors.joining("\n\t")));
@@ -1,22 +1,54 @@
 package com.bt.code.egress.write;
 
 import com.bt.code.egress.process.FileLocation;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
 import lombok.Value;
 
+import java.nio.charset.Charset;
+import java.nio.file.Path;
 import java.util.List;
 
 @Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
 public class FileCompleted {
     FileLocation file;
+    // null if file was streamed
     List<String> originalLines;
     List<String> replacedLines;
+    // original terminator of each line, null if lines are joined by system line separator
+    List<String> lineEnds;
+    // streamed file: replaced text in temp file, listener moves or deletes it
+    Path replacedFile;
+    boolean changed;
+    long charsRead;
+    long linesRead;
+    // charset of output, null for UTF-8
+    Charset charset;
 
     @FunctionalInterface
     public interface Listener {
         void onFileCompleted(FileCompleted fileCompleted);
     }
 
-    public boolean isChanged() {
-        return !originalLines.equals(replacedLines);
+    public FileCompleted(FileLocation file, List<String> originalLines, List<String> replacedLines) {
+        this(file, originalLines, replacedLines, null);
+    }
+
+    public FileCompleted(FileLocation file, List<String> originalLines, List<String> replacedLines, List<String> lineEnds) {
+        this(file, originalLines, replacedLines, lineEnds, null, !originalLines.equals(replacedLines),
+                originalLines.stream().mapToLong(String::length).sum(), originalLines.size(), null);
+    }
+
+    public static FileCompleted streamed(FileLocation file, Path replacedFile, boolean changed, long charsRead, long linesRead) {
+        return new FileCompleted(file, null, null, null, replacedFile, changed, charsRead, linesRead, null);
+    }
+
+    /**
+     * @param charset charset of input file, output is written in it
+     */
+    public FileCompleted withCharset(Charset charset) {
+        return new FileCompleted(file, originalLines, replacedLines, lineEnds, replacedFile, changed,
+                charsRead, linesRead, charset);
     }
 }
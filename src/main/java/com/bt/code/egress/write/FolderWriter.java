@@ -10,10 +10,12 @@ import lombok.extern.slf4j.Slf4j;
 import net.lingala.zip4j.ZipFile;
 import net.lingala.zip4j.model.ZipParameters;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -25,6 +27,7 @@ import java.util.concurrent.ConcurrentSkipListSet;
 @RequiredArgsConstructor
 @Slf4j
 public class FolderWriter implements FileCompleted.Listener, ZipCompleted.Listener {
+    private static final int BUFFER_SIZE = 64 << 10;
     @Getter
     private final Path root;
     private final Set<Path> preparedZips = new ConcurrentSkipListSet<>();
@@ -32,25 +35,37 @@ public class FolderWriter implements FileCompleted.Listener, ZipCompleted.Listen
     @Override
     public void onFileCompleted(FileCompleted fileCompleted) {
         init();
-        if (fileCompleted.isChanged()) {
-            if (fileCompleted.getFile().isInsideZip()) {
-                Path originalZipRelativePath = fileCompleted.getFile().getRelativeZipPath();
-                Path newZipPath = getTargetZipRoot().resolve(originalZipRelativePath);
-
-                prepareZip(fileCompleted.getFile().getZipPath(), newZipPath);
-                writeIntoZip(originalZipRelativePath, newZipPath,
-                        fileCompleted.getFile().getFilePath(), fileCompleted.getReplacedLines());
-            } else {
-                write(fileCompleted.getFile().getFilePath(), fileCompleted.getReplacedLines());
+        Path replacedFile = fileCompleted.getReplacedFile();
+        try {
+            if (fileCompleted.isChanged()) {
+                if (replacedFile != null && fileCompleted.getCharset() != null) {
+                    replacedFile = encode(replacedFile, fileCompleted.getCharset());
+                }
+                if (fileCompleted.getFile().isInsideZip()) {
+                    Path originalZipRelativePath = fileCompleted.getFile().getRelativeZipPath();
+                    Path newZipPath = getTargetZipRoot().resolve(originalZipRelativePath);
+
+                    prepareZip(fileCompleted.getFile().getZipPath(), newZipPath);
+                    writeIntoZip(originalZipRelativePath, newZipPath,
+                            fileCompleted.getFile().getFilePath(), toStream(fileCompleted, replacedFile));
+                } else if (replacedFile != null) {
+                    move(fileCompleted.getFile().getFilePath(), replacedFile);
+                } else {
+                    write(fileCompleted.getFile().getFilePath(), fileCompleted.getReplacedLines(),
+                            fileCompleted.getLineEnds(), fileCompleted.getCharset());
+                }
+                Stats.fileChanged();
+            }
+        } finally {
+            deleteTempFile(fileCompleted.getReplacedFile());
+            if (replacedFile != fileCompleted.getReplacedFile()) {
+                deleteTempFile(replacedFile);
             }
-            Stats.fileChanged();
         }
 
         Stats.fileRead();
-        Stats.bytesRead(
-                fileCompleted.getOriginalLines().stream().mapToInt(String::length).sum()
-        );
-        Stats.linesRead(fileCompleted.getOriginalLines().size());
+        Stats.bytesRead(fileCompleted.getCharsRead());
+        Stats.linesRead(fileCompleted.getLinesRead());
 
         if (fileCompleted.getFile().isCsv()) {
             Stats.csvFileRead();
@@ -86,27 +101,96 @@ public class FolderWriter implements FileCompleted.Listener, ZipCompleted.Listen
     }
 
     public void write(Path file, List<String> replacedLines) {
+        write(file, replacedLines, null);
+    }
+
+    /**
+     * @param lineEnds original line terminators, null to join lines by system line separator
+     */
+    public void write(Path file, List<String> replacedLines, List<String> lineEnds) {
+        write(file, replacedLines, lineEnds, null);
+    }
+
+    /**
+     * @param charset charset of input file, null for UTF-8
+     */
+    public void write(Path file, List<String> replacedLines, List<String> lineEnds, Charset charset) {
         init();
         Path path = root.resolve(file);
         log.info("Save changed file to {}", path);
         try {
             LocalFiles.createDirectories(path.getParent());
-            try (BufferedWriter bufferedWriter = LocalFiles.newBufferedWriter(path)) {
-                KeepEolFiles.write(bufferedWriter, replacedLines);
+            try (BufferedWriter bufferedWriter = charset == null
+                    ? LocalFiles.newBufferedWriter(path)
+                    : LocalFiles.newBufferedWriter(path, charset)) {
+                KeepEolFiles.write(bufferedWriter, replacedLines, lineEnds);
             }
         } catch (IOException e) {
             throw new RuntimeException("Failed to write output to " + path, e);
         }
     }
 
+    /**
+     * Move streamed file with replaced text to output.
+     */
+    public void move(Path file, Path replacedFile) {
+        init();
+        Path path = root.resolve(file);
+        log.info("Save changed file to {}", path);
+        try {
+            LocalFiles.createDirectories(path.getParent());
+            LocalFiles.move(replacedFile, path, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write output to " + path, e);
+        }
+    }
+
+    /**
+     * Streamed temp file is written as UTF-8, write its copy in charset of input file.
+     *
+     * @return temp file in charset
+     */
+    private Path encode(Path replacedFile, Charset charset) {
+        Path encoded = null;
+        try {
+            encoded = LocalFiles.createTempFile("egress-", ".tmp");
+            try (BufferedReader reader = LocalFiles.newBufferedReader(replacedFile, StandardCharsets.UTF_8);
+                 BufferedWriter writer = LocalFiles.newBufferedWriter(encoded, charset)) {
+                char[] buffer = new char[BUFFER_SIZE];
+                int read;
+                while ((read = reader.read(buffer)) >= 0) {
+                    writer.write(buffer, 0, read);
+                }
+            }
+            return encoded;
+        } catch (IOException e) {
+            deleteTempFile(encoded);
+            throw new RuntimeException("Failed to encode temp file " + replacedFile + " as " + charset, e);
+        }
+    }
+
+    private void deleteTempFile(Path tempFile) {
+        if (tempFile != null) {
+            try {
+                LocalFiles.deleteIfExists(tempFile);
+            } catch (IOException e) {
+                log.error("Failed to delete temp file {}", tempFile, e);
+            }
+        }
+    }
+
     public void writeIntoZip(Path originalZipPath, Path newZipPath, Path file, List<String> replacedLines) {
+        writeIntoZip(originalZipPath, newZipPath, file, toStream(replacedLines));
+    }
+
+    private void writeIntoZip(Path originalZipPath, Path newZipPath, Path file, InputStream replaced) {
         log.info("For originalZipPath {}, will write {} to target {}", originalZipPath, file, newZipPath);
 
-        try (ZipFile zipFile = new ZipFile(newZipPath.toFile())) {
+        try (ZipFile zipFile = new ZipFile(newZipPath.toFile()); InputStream inputStream = replaced) {
             ZipParameters parameters = new ZipParameters();
             parameters.setFileNameInZip(file.toString());
 
-            zipFile.addStream(toStream(replacedLines), parameters);
+            zipFile.addStream(inputStream, parameters);
         } catch (IOException ie) {
             throw new RuntimeException(String.format("Failed to add file %s to zip %s", file, newZipPath), ie);
         }
@@ -136,10 +220,32 @@ public class FolderWriter implements FileCompleted.Listener, ZipCompleted.Listen
     }
 
 
+    private InputStream toStream(FileCompleted fileCompleted, Path replacedFile) {
+        if (replacedFile == null) {
+            return toStream(fileCompleted.getReplacedLines(), fileCompleted.getLineEnds(), fileCompleted.getCharset());
+        }
+        try {
+            return LocalFiles.newInputStream(replacedFile);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read temp file " + replacedFile, e);
+        }
+    }
+
     private InputStream toStream(List<String> lines) {
         return new ByteArrayInputStream(String.join(System.lineSeparator(), lines).getBytes(StandardCharsets.UTF_8));
     }
 
+    private InputStream toStream(List<String> lines, List<String> lineEnds, Charset charset) {
+        if (lineEnds == null) {
+            return toStream(lines);
+        }
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines.size(); i++) {
+            text.append(lines.get(i)).append(lineEnds.get(i));
+        }
+        return new ByteArrayInputStream(text.toString().getBytes(charset == null ? StandardCharsets.UTF_8 : charset));
+    }
+
     protected Path getTargetZipRoot() {
         return getTempRoot();
     }
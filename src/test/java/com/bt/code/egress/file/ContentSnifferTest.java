@@ -0,0 +1,50 @@
+package com.bt.code.egress.file;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContentSnifferTest {
+
+    @Test
+    void sniff() {
+        assertThat(sniff(new byte[]{'P', 'K', 3, 4, 0}).getType()).isEqualTo(ContentSniffer.ContentType.ZIP);
+        assertThat(sniff(new byte[]{(byte) 0x89, 'P', 'N', 'G', 'a'}).getReason()).isEqualTo("PNG header");
+        assertThat(sniff(new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE}).getReason()).isEqualTo("class header");
+        assertThat(sniff("%PDF-1.4".getBytes(StandardCharsets.US_ASCII)).getType()).isEqualTo(ContentSniffer.ContentType.BINARY);
+        assertThat(sniff(new byte[]{'a', 0, 'b'}).getReason()).isEqualTo("NUL byte");
+
+        assertThat(sniff(new byte[0])).isEqualTo(new ContentSniffer.Content(ContentSniffer.ContentType.TEXT, null, null));
+        assertThat(sniff("PK text".getBytes(StandardCharsets.US_ASCII)).getType()).isEqualTo(ContentSniffer.ContentType.TEXT);
+        assertThat(sniff("\uFEFFtext".getBytes(StandardCharsets.UTF_8)).getCharset()).isEqualTo(StandardCharsets.UTF_8);
+        ContentSniffer.Content utf16 = sniff("\uFEFFtext".getBytes(StandardCharsets.UTF_16LE));
+        assertThat(utf16.getType()).isEqualTo(ContentSniffer.ContentType.TEXT);
+        assertThat(utf16.getCharset()).isEqualTo(StandardCharsets.UTF_16LE);
+    }
+
+    @Test
+    void streamIsReset() throws IOException {
+        byte[] bytes = new byte[ContentSniffer.HEADER_SIZE * 3];
+        Arrays.fill(bytes, (byte) 'a');
+        // NUL after header is not seen
+        bytes[ContentSniffer.HEADER_SIZE * 2] = 0;
+        InputStream inputStream = new BufferedInputStream(new ByteArrayInputStream(bytes), ContentSniffer.HEADER_SIZE);
+        assertThat(ContentSniffer.sniff(inputStream).getType()).isEqualTo(ContentSniffer.ContentType.TEXT);
+        int length = 0;
+        while (inputStream.read() >= 0) {
+            length++;
+        }
+        assertThat(length).isEqualTo(bytes.length);
+    }
+
+    private static ContentSniffer.Content sniff(byte[] bytes) {
+        return ContentSniffer.sniff(bytes, bytes.length);
+    }
+}
@@ -8,6 +8,9 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -43,6 +46,34 @@ class KeepEolFilesTest {
         checkCycle("");
     }
 
+    @Test
+    void lineEnds() {
+        KeepEolFiles.LineIterator lines = KeepEolFiles.lines(new StringReader("win\r\nlinux\nmac\r\rlast"));
+        List<String> lineEnds = new ArrayList<>();
+        while (lines.hasNext()) {
+            lines.next();
+            lineEnds.add(lines.getLineEnd());
+        }
+        assertThat(lineEnds).isEqualTo(ImmutableList.of("\r\n", "\n", "\r", "\r", ""));
+    }
+
+    @Test
+    void exactCycle() throws IOException {
+        checkExactCycle("");
+        checkExactCycle("\r");
+        checkExactCycle("win\r\nlinux\nmac\rmixed empty\r\n\rno EOL");
+        checkExactCycle("win\r\nlinux\nmac\rmixed empty\r\n\rwith EOL\r\n");
+
+        // lines and CRLF across read blocks
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            content.append("line ").append(i).append(i % 3 == 0 ? "\r\n" : i % 3 == 1 ? "\r" : "\n");
+        }
+        content.append(String.join("", Collections.nCopies(100_000, "x"))).append("\r\n");
+        checkExactCycle(content.toString());
+        assertThat(getReadLines(content.toString())).hasSize(20_002);
+    }
+
     List<String> getReadLines(String content) {
         StringReader reader = new StringReader(content);
         BufferedReader bufferedReader = new BufferedReader(reader);
@@ -61,4 +92,23 @@ class KeepEolFilesTest {
         List<String> lines = getReadLines(content);
         assertThat(getWriteContent(lines)).isEqualTo(content);
     }
+
+    void checkExactCycle(String content) throws IOException {
+        KeepEolFiles.LineIterator iterator = KeepEolFiles.lines(new StringReader(content));
+        List<String> lines = new ArrayList<>();
+        List<String> lineEnds = new ArrayList<>();
+        while (iterator.hasNext()) {
+            lines.add(iterator.next());
+            lineEnds.add(iterator.getLineEnd());
+        }
+        if (!content.isEmpty()) {
+            assertThat(lines).isEqualTo(Arrays.asList(content.split("\\r\\n|\\r|\\n", -1)));
+        }
+
+        StringWriter stringWriter = new StringWriter();
+        BufferedWriter bufferedWriter = new BufferedWriter(stringWriter);
+        KeepEolFiles.write(bufferedWriter, lines, lineEnds);
+        bufferedWriter.close();
+        assertThat(stringWriter.toString()).isEqualTo(content);
+    }
 }
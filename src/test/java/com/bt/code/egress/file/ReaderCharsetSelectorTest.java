@@ -6,10 +6,13 @@ import org.junit.jupiter.api.Test;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.stream.Collectors;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Slf4j
@@ -40,4 +43,45 @@ class ReaderCharsetSelectorTest {
         assertTrue(fromISO8859.startsWith("t"));
         assertTrue(fromISO8859.endsWith("mido"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void mappedSameAsInMemory() throws IOException {
+        String ascii = "first line\r\nsecond\n\nlast";
+        String text = "t\u00edmido \u20ac \uD83D\uDE00\nline";
+        for (String content : new String[]{ascii, text}) {
+            Path utf8 = Files.createTempFile("utf8", "-test");
+            Files.write(utf8, content.getBytes(StandardCharsets.UTF_8));
+            assertThat(readMapped(utf8)).isEqualTo(readInMemory(utf8));
+            assertThat(readMapped(utf8)).isEqualTo(content.replace("\r\n", "\n"));
+        }
+
+        Path latin = Files.createTempFile("iso8859", "-test");
+        Files.write(latin, text.replace("\u20ac \uD83D\uDE00", "").getBytes(StandardCharsets.ISO_8859_1));
+        assertThat(readMapped(latin)).isEqualTo(readInMemory(latin)).isEqualTo("t\u00edmido \nline");
+    }
+
+    @Test
+    public void decodingReaderSplitsSurrogatePairForSingleChar() throws IOException {
+        String text = "a\uD83D\uDE00b";
+        DecodingReader reader = new DecodingReader(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)),
+                StandardCharsets.UTF_8);
+        char[] chars = new char[4];
+        assertThat(reader.read(chars, 0, 2)).isEqualTo(1);
+        // pair at buffer boundary, as asked by BufferedReader shifting its marked chars
+        assertThat(reader.read(chars, 1, 1)).isEqualTo(1);
+        assertThat(reader.read(chars, 2, 1)).isEqualTo(1);
+        assertThat(reader.read(chars, 3, 1)).isEqualTo(1);
+        assertThat(reader.read(chars, 0, 1)).isEqualTo(-1);
+        assertThat(new String(chars)).isEqualTo(text);
+    }
+
+    private static String readMapped(Path file) throws IOException {
+        return ReaderCharsetSelector.doWithBufferedReader(FileLocation.forFile(file), 0,
+                br -> br.lines().collect(Collectors.joining("\n")), StandardCharsets.ISO_8859_1);
+    }
+
+    private static String readInMemory(Path file) throws IOException {
+        return ReaderCharsetSelector.doWithBufferedReader(FileLocation.forFile(file),
+                br -> br.lines().collect(Collectors.joining("\n")), StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,53 @@
+package com.bt.code.egress.file;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class Utf8ValidatorTest {
+
+    @Test
+    void sameAsDecoder() {
+        Random random = new Random(11);
+        byte[] alphabet = {'a', ' ', (byte) 0x80, (byte) 0x8F, (byte) 0x90, (byte) 0x9F, (byte) 0xA0, (byte) 0xBF,
+                (byte) 0xC0, (byte) 0xC2, (byte) 0xDF, (byte) 0xE0, (byte) 0xE1, (byte) 0xED, (byte) 0xEF,
+                (byte) 0xF0, (byte) 0xF3, (byte) 0xF4, (byte) 0xF5, (byte) 0xFF};
+        for (int round = 0; round < 20_000; round++) {
+            byte[] bytes = new byte[random.nextInt(8)];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = alphabet[random.nextInt(alphabet.length)];
+            }
+            boolean expected = decodes(bytes);
+            assertThat(Utf8Validator.isValid(bytes, bytes.length)).as("%s", ByteBuffer.wrap(bytes)).isEqualTo(expected);
+
+            // same result when bytes come in two buffers
+            int split = bytes.length == 0 ? 0 : random.nextInt(bytes.length);
+            Utf8Validator validator = new Utf8Validator();
+            validator.update(bytes, 0, split);
+            validator.update(bytes, split, bytes.length);
+            assertThat(validator.isValid()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void bomAndText() {
+        byte[] bytes = "\uFEFFt\u00edmido \u20ac".getBytes(StandardCharsets.UTF_8);
+        assertThat(Utf8Validator.isValid(bytes, bytes.length)).isTrue();
+        byte[] latin = "t\u00edmido".getBytes(StandardCharsets.ISO_8859_1);
+        assertThat(Utf8Validator.isValid(latin, latin.length)).isFalse();
+    }
+
+    private static boolean decodes(byte[] bytes) {
+        try {
+            StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes));
+            return true;
+        } catch (CharacterCodingException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.bt.code.egress.process;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OverlapIndexTest {
+
+    @Test
+    void sameAsPairwiseCheck() {
+        Random random = new Random(42);
+        for (int run = 0; run < 500; run++) {
+            int n = 1 + random.nextInt(30);
+            int[] starts = new int[n];
+            int[] ends = new int[n];
+            for (int i = 0; i < n; i++) {
+                starts[i] = random.nextInt(40);
+                // empty intervals too
+                ends[i] = starts[i] + random.nextInt(8);
+            }
+            OverlapIndex index = new OverlapIndex(starts, ends);
+            List<Integer> added = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                int expected = -1;
+                for (int rank = 0; rank < added.size(); rank++) {
+                    int other = added.get(rank);
+                    if (!(ends[other] <= starts[i] || starts[other] >= ends[i])) {
+                        expected = rank;
+                        break;
+                    }
+                }
+                assertThat(index.findFirstOverlap(i)).isEqualTo(expected);
+                if (random.nextInt(4) > 0) {
+                    index.add(i, added.size());
+                    added.add(i);
+                }
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.bt.code.egress.process;
 import com.bt.code.egress.App;
 import com.bt.code.egress.Config;
 import com.bt.code.egress.file.LocalFiles;
+import com.bt.code.egress.read.RuleProfiler;
 import com.bt.code.egress.report.FileErrors;
 import com.bt.code.egress.report.Stats;
 import com.bt.code.egress.write.FolderMock;
@@ -59,6 +60,7 @@ public class ProcessTestBase {
     protected void runScan() {
         FileErrors.reset();
         Stats.reset();
+        RuleProfiler.reset();
         App.RunnerBuilder runnerBuilder = App.RunnerBuilder.of(config);
         runnerBuilder.submit(JobRunner.DIRECT_RUNNER);
         runnerBuilder.close();
@@ -1,10 +1,13 @@
 package com.bt.code.egress.process;
 
+import com.bt.code.egress.report.Stats;
 import com.google.common.collect.ImmutableList;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -90,4 +93,117 @@ public class ReplaceTest extends ProcessTestBase {
                 "sales@acme.com,u125255358@mail.local"));
     }
 
+    @Test
+    void wholeFileSameAsLineByLine() {
+        List<String> report = assertSameAfterConfigChange(ImmutableList.of(
+                "Company: ACME",
+                "",
+                "Company email: sales@acme.com, acme",
+                "none"), () -> config.getRead().setWholeFile(true));
+        assertThat(report).hasSize(4);
+    }
+
+    @Test
+    void parallelChunksSameAsLineByLine() {
+        List<String> report = assertSameAfterConfigChange(ImmutableList.of(
+                "Company: ACME",
+                "none",
+                "",
+                "Company email: sales@acme.com, acme",
+                "none",
+                "acme"), () -> config.getRead().setParallelFileSize(10));
+        assertThat(report).hasSize(5);
+    }
+
+    @Test
+    void streamedSameAsInMemory() {
+        List<String> report = assertSameAfterConfigChange(ImmutableList.of(
+                "Company: ACME",
+                "none",
+                "",
+                "Company email: sales@acme.com, acme",
+                "none",
+                "acme",
+                ""), () -> config.getRead().setStreamFileSize(10));
+        assertThat(report).hasSize(5);
+        assertThat(fileSystem.exists(Paths.get("tmp/egress-0.tmp"))).isFalse();
+    }
+
+    /**
+     * Scan lines with default config and again after config change, both scans give same text and report.
+     *
+     * @return report of the scans
+     */
+    private List<String> assertSameAfterConfigChange(List<String> lines, Runnable configChange) {
+        fileSystem.write(sampleTextPath, lines);
+        runScan();
+        String replaced = fileSystem.read(sampleTextPath);
+        List<String> report = fileSystem.readAllLines(config.getReplace().getReport().toPath());
+
+        configChange.run();
+        fileSystem.write(sampleTextPath, lines);
+        runScan();
+        assertThat(fileSystem.read(sampleTextPath)).isEqualTo(replaced);
+        assertThat(fileSystem.readAllLines(config.getReplace().getReport().toPath())).isEqualTo(report);
+        return report;
+    }
+
+    @Test
+    void streamedCopiesCleanPrefix() {
+        String text = "none\r\nclean line\rmore\n\nCompany: ACME\nlast\n";
+        fileSystem.write(sampleTextPath, text);
+        runScan();
+        String replacedInMemory = fileSystem.read(sampleTextPath);
+        assertThat(replacedInMemory).startsWith("none\r\nclean line\rmore\n\nCompany: w");
+
+        config.getRead().setStreamFileSize(10);
+        fileSystem.write(sampleTextPath, text);
+        runScan();
+        assertThat(fileSystem.read(sampleTextPath)).isEqualTo(replacedInMemory);
+    }
+
+    @Test
+    void streamedCleanFileNotWritten() {
+        config.getRead().setStreamFileSize(10);
+        fileSystem.write(sampleTextPath, ImmutableList.of("Company: none", "none", "acmes"));
+        runScan();
+        assertThat(Stats.get("Clean Files")).isEqualTo(1L);
+        assertThat(fileSystem.exists(Paths.get("tmp"))).isFalse();
+    }
+
+    @Test
+    void cleanFileSkipped() {
+        fileSystem.write(sampleTextPath, ImmutableList.of("Company: none", "acmes"));
+        runScan();
+        assertThat(fileSystem.read(sampleTextPath)).isEqualTo("Company: none\nacmes");
+        assertThat(Stats.get("Clean Files")).isEqualTo(1L);
+        assertThat(Stats.get("Read Files")).isEqualTo(1L);
+        assertThat(fileSystem.readAllLines(config.getReplace().getReport().toPath())).isEqualTo(ImmutableList.of(
+                "Allow,Text,Context,File,Line,Replacement,Comment"));
+    }
+
+    @Test
+    void binaryFileSkipped() {
+        fileSystem.write(sampleTextPath, "Company: ACME\u0000");
+        runScan();
+        assertThat(fileSystem.read(sampleTextPath)).isEqualTo("Company: ACME\u0000");
+        assertThat(Stats.get("Skipped Binary Files")).isEqualTo(1L);
+        assertThat(Stats.get("Read Files")).isEqualTo(0L);
+        assertThat(fileSystem.readAllLines(config.getReplace().getReport().toPath())).isEqualTo(ImmutableList.of(
+                "Allow,Text,Context,File,Line,Replacement,Comment"));
+    }
+
+    @Test
+    void ruleProfile() {
+        config.getReplace().setRuleProfile(new File("target/rule-profile.csv"));
+        fileSystem.write(sampleTextPath, ImmutableList.of("Company: ACME", "acme"));
+        runScan();
+
+        List<String> profile = fileSystem.readAllLines(Paths.get("target/rule-profile.csv"));
+        assertThat(profile.get(0)).isEqualTo("Section,Rule Set,Rule,Evaluations,Hits,Nanos");
+        assertThat(profile.get(1)).isEqualTo("Cost,Guard,Value acme,0,2,0");
+        // pattern is never evaluated, text has no required literal
+        assertThat(profile.get(2)).startsWith("Dead,Guard,Pattern \\w[\\w.-]+@");
+        assertThat(profile).hasSize(3);
+    }
 }
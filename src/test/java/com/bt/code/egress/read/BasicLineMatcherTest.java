@@ -0,0 +1,55 @@
+package com.bt.code.egress.read;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BasicLineMatcherTest {
+
+    private static List<String> getWords(BasicLineMatcher matcher, String line) {
+        return matcher.getMatches(line).stream()
+                .map(m -> m.getLineToken().getWord())
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void overlappingPhrases() {
+        Map<String, String> values = new HashMap<>();
+        values.put("acme corp", "");
+        values.put("corp team", "");
+        values.put("team", "");
+        values.put("acme", "");
+        BasicLineMatcher matcher = new BasicLineMatcher(values, Collections.emptyMap());
+
+        assertThat(getWords(matcher, "Hello Acme Corp Team!"))
+                .containsExactly("Acme", "Acme Corp", "Corp Team", "Team");
+        assertThat(getWords(matcher, "acmecorp teams")).isEmpty();
+        assertThat(getWords(matcher, "no phrases here")).isEmpty();
+    }
+
+    @Test
+    void repeatedPhraseDoesNotOverlapItself() {
+        BasicLineMatcher matcher = new BasicLineMatcher(Collections.singletonMap("a a", ""), Collections.emptyMap());
+
+        assertThat(matcher.getMatches("a a a a")).hasSize(2);
+    }
+
+    @Test
+    void valueTemplateHasPriority() {
+        BasicLineMatcher matcher = new BasicLineMatcher(
+                Collections.singletonMap("big-bank", "bank{hash}"),
+                Collections.singletonMap(Pattern.compile("big-\\w+"), "pattern{hash}"));
+
+        List<WordMatch> matches = matcher.getMatches("at Big-Bank");
+        assertThat(matches).hasSize(1);
+        assertThat(matches.get(0).getTemplate()).isEqualTo("bank{hash}");
+    }
+}
@@ -80,4 +80,21 @@ class CsvFormatDetectorTest {
                 .as(LINE_3)
                 .isEqualTo(QuoteMode.ALL);
     }
-}
\ No newline at end of file
+
+    @Test
+    void peekQuoteModeStopsAtMarkLimit() throws IOException {
+        CsvFormatDetector csvFormatDetector = new CsvFormatDetector(',', '"', '#');
+        StringBuilder text = new StringBuilder("\n\r\n#\"a\",\"b\"\r\n\"a\",\"b\"\n");
+        assertThat(csvFormatDetector.peekQuoteMode(new BufferedReader(new StringReader(text.toString()))))
+                .isEqualTo(QuoteMode.ALL);
+
+        text.setLength(0);
+        while (text.length() <= 1 << 20) {
+            text.append("# long comment before first record\n");
+        }
+        text.append("1,John,new employee\n");
+        BufferedReader br = new BufferedReader(new StringReader(text.toString()));
+        assertThat(csvFormatDetector.peekQuoteMode(br)).isEqualTo(QuoteMode.ALL);
+        assertThat(br.readLine()).isEqualTo("# long comment before first record");
+    }
+}
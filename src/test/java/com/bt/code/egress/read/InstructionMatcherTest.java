@@ -0,0 +1,97 @@
+package com.bt.code.egress.read;
+
+import com.bt.code.egress.report.Report;
+import com.bt.code.egress.report.ReportHelper;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InstructionMatcherTest {
+    private static final int MIN_COMPARE_LENGTH = 3;
+    private static final List<String> FILES = Arrays.asList("", "a/x.txt", "a/y.txt", "a/*.txt", "**/y.txt", "b/**",
+            "a//x.txt", "/a/x.txt", "a/x.txt/", "a\\x.txt");
+    private static final List<String> CONTEXTS = Arrays.asList("", "foo", "1 foo", "a foo", "a foo b", "foo bar", "x.foo.y", "foo b",
+            "xx foo", "foo yy", "c foo c", "d foo d", "e foo e", "f foo f", "g foo g", "h foo h", "i foo i", "j foo j", "k foo k",
+            "l foo l", "m foo m", "n foo n", "o foo o", "p foo p", "q foo q", "r foo r", "s foo s", "t foo t", "u foo u");
+
+    @Test
+    void sameAsLinearScan() {
+        Random random = new Random(7);
+        ReportHelper reportHelper = new ReportHelper(10, MIN_COMPARE_LENGTH);
+        int automatonRounds = 0;
+        for (int round = 0; round < 30; round++) {
+            List<Report.ReportLine> rows = new ArrayList<>();
+            int count = 1 + random.nextInt(80);
+            for (int i = 0; i < count; i++) {
+                rows.add(new Report.ReportLine(random.nextBoolean(), "foo", pick(random, CONTEXTS), pick(random, FILES),
+                        random.nextInt(3) == 0 ? 1 + random.nextInt(3) : null, null, "row " + i));
+            }
+            long partContexts = rows.stream().map(Report.ReportLine::getContext)
+                    .filter(c -> c.length() >= 3 + MIN_COMPARE_LENGTH && c.contains("foo"))
+                    .distinct().count();
+            if (partContexts >= InstructionIndex.AUTOMATON_MIN_CONTEXTS) {
+                automatonRounds++;
+            }
+            rows.sort(Comparator.comparing(Report.ReportLine::getContext, ReportHelper.CONTEXT_COMPARATOR)
+                    .thenComparing(Report.ReportLine::getFile, ReportHelper.CONTEXT_COMPARATOR)
+                    .thenComparing(Report.ReportLine::getAllow, ReportHelper.ALLOW_COMPARATOR));
+            Map<String, List<Report.ReportLine>> rowsByText = new HashMap<>();
+            rowsByText.put("foo", rows);
+            InstructionMatcher matcher = new InstructionMatcher(reportHelper, rowsByText, Collections.emptyMap());
+            InstructionMatcher cachingMatcher = new InstructionMatcher(reportHelper, rowsByText, Collections.emptyMap(), 100);
+
+            for (String line : Arrays.asList("foo", "a foo b", "xx foo yy", "x.foo.y z", "1 foo bar", "zz c foo c d foo d e foo e",
+                    "q foo q r", "1 foo bar s foo s")) {
+                LineToken token = new LineToken(line, line.indexOf("foo"), line.indexOf("foo") + 3);
+                for (String file : Arrays.asList("a/x.txt", "a\\x.txt", "a/y.txt", "b/c/y.txt", "c.txt")) {
+                    for (int lineNum = 1; lineNum <= 3; lineNum++) {
+                        LineLocation location = new LineLocation(file, lineNum);
+                        Report.ReportLine expected = linearScan(rows, location, line.toLowerCase());
+                        assertThat(matcher.getInstruction(location, token, line)).isEqualTo(expected);
+                        // second lookup is from cache unless line has its own rows
+                        assertThat(cachingMatcher.getInstruction(location, token, line)).isEqualTo(expected);
+                        assertThat(cachingMatcher.getInstruction(location, token, line)).isEqualTo(expected);
+                    }
+                }
+            }
+        }
+        // part contexts are found by automaton, not only by linear scan of index
+        assertThat(automatonRounds).isGreaterThan(5);
+    }
+
+    private static String pick(Random random, List<String> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private static Report.ReportLine linearScan(List<Report.ReportLine> rows, LineLocation location, String tokenContext) {
+        Report.ReportLine found = null;
+        for (Report.ReportLine r : rows) {
+            String context = r.getContext();
+            boolean contextMatch = StringUtils.isBlank(context) || context.equals(tokenContext)
+                    || tokenContext.length() > context.length() && context.length() >= 3 + MIN_COMPARE_LENGTH
+                    && tokenContext.contains(context) && context.contains("foo");
+            String file = r.getFile();
+            boolean fileMatch = StringUtils.isBlank(file) || file.equals(location.getFile())
+                    || FilePathMatcher.match(file, location.getFile());
+            if (contextMatch && fileMatch) {
+                if (StringUtils.isNotBlank(file) && location.getLineNum().equals(r.getLine())) {
+                    return r;
+                }
+                if (found == null) {
+                    found = r;
+                }
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,58 @@
+package com.bt.code.egress.read;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MatchBufferTest {
+    private static final MatchRules RULES = new MatchRules() {
+        @Override
+        public String getReason(int rule) {
+            return "Rule " + rule;
+        }
+
+        @Override
+        public String getTemplate(int rule) {
+            return rule == 0 ? "" : "t" + rule;
+        }
+    };
+
+    private static List<String> describe(MatchBuffer matches) {
+        return matches.toWordMatches(0, matches.size(), "abcdefgh").stream()
+                .map(m -> m.getReason() + ":" + m.getLineToken().getWord())
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void groupByLineKeepsOrderAndRemovesDuplicates() {
+        MatchBuffer matches = new MatchBuffer();
+        matches.add(RULES, 1, 2, 0, 2);
+        matches.add(RULES, 0, 1, 0, 2);
+        matches.add(RULES, 2, 1, 0, 2);
+        // same word already matched with template
+        matches.add(RULES, 3, 1, 0, 2);
+        matches.add(RULES, 4, 1, 2, 4);
+        matches.groupByLine(0);
+
+        assertThat(matches.size()).isEqualTo(4);
+        assertThat(matches.getLine(0)).isEqualTo(1);
+        assertThat(matches.getLineEnd(0)).isEqualTo(3);
+        assertThat(describe(matches)).containsExactly("Rule 0:ab", "Rule 2:ab", "Rule 4:cd", "Rule 1:ab");
+    }
+
+    @Test
+    void removeIf() {
+        MatchBuffer matches = new MatchBuffer();
+        for (int i = 0; i < 40; i++) {
+            matches.add(RULES, i, 0, i % 8, i % 8 + 1);
+        }
+        matches.removeIf(0, i -> matches.getStart(i) != 3);
+        assertThat(describe(matches)).containsExactly("Rule 3:d", "Rule 11:d", "Rule 19:d", "Rule 27:d", "Rule 35:d");
+
+        matches.clear();
+        assertThat(matches.size()).isEqualTo(0);
+    }
+}
@@ -0,0 +1,187 @@
+package com.bt.code.egress.read;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PatternSetTest {
+
+    private static PatternSet patternSet(String... regexes) {
+        Map<Pattern, String> patterns = new LinkedHashMap<>();
+        for (String regex : regexes) {
+            patterns.put(Pattern.compile(regex), "t-" + regex);
+        }
+        return new PatternSet(patterns);
+    }
+
+    @Test
+    void findAllReportsOverlappingMatchesOfEveryPattern() {
+        PatternSet patternSet = patternSet("acct-\\d+", "\\d{3}", "(a)\\1", "(?i)host");
+
+        List<String> found = patternSet.findAll("x acct-12345 aa HOST", new ArrayList<>(), (r, m) -> {
+            r.add(m.group() + "@" + m.start());
+            return r;
+        });
+        assertThat(found).containsExactly("acct-12345@2", "123@7", "aa@13", "HOST@16");
+
+        assertThat(patternSet.findAll("nothing", new ArrayList<>(), (r, m) -> {
+            r.add(m.group());
+            return r;
+        })).isEmpty();
+    }
+
+    @Test
+    void matchFirstTakesFirstPatternInOrder() {
+        PatternSet patternSet = patternSet("\\d+", "x\\d+", "[x0-9]+");
+
+        Matcher matcher = patternSet.matchFirst("x12");
+        assertThat(matcher.pattern().pattern()).isEqualTo("x\\d+");
+        assertThat(patternSet.getTemplate(matcher.pattern())).isEqualTo("t-x\\d+");
+        assertThat(patternSet.matchFirst("12").pattern().pattern()).isEqualTo("\\d+");
+        assertThat(patternSet.matchFirst("y12")).isNull();
+    }
+
+    @Test
+    void findFirstTakesFirstPatternInOrder() {
+        PatternSet patternSet = patternSet("b+", "a");
+
+        Matcher matcher = patternSet.findFirst("abb");
+        assertThat(matcher.pattern().pattern()).isEqualTo("b+");
+        assertThat(matcher.start()).isEqualTo(1);
+        assertThat(patternSet.findFirst("ccc")).isNull();
+    }
+
+    @Test
+    void requiredLiteral() {
+        assertThat(PatternLiteral.extract(Pattern.compile("acct-\\d{4,}"))).isEqualTo("acct-");
+        assertThat(PatternLiteral.extract(Pattern.compile("\\bsrv\\d+\\.corp\\.example\\b"))).isEqualTo(".corp.example");
+        assertThat(PatternLiteral.extract(Pattern.compile("[\\w.]+@[\\w.]+"))).isEqualTo("@");
+        assertThat(PatternLiteral.extract(Pattern.compile("abc?d"))).isEqualTo("ab");
+        assertThat(PatternLiteral.extract(Pattern.compile("x(ab|cd)*yz+"))).isEqualTo("yz");
+        assertThat(PatternLiteral.extract(Pattern.compile("\\p{L}{2}ab"))).isEqualTo("ab");
+        assertThat(PatternLiteral.extract(Pattern.compile("ab|cd"))).isNull();
+        assertThat(PatternLiteral.extract(Pattern.compile("(?i)abc"))).isNull();
+        assertThat(PatternLiteral.extract(Pattern.compile("\\d+"))).isNull();
+    }
+
+    @Test
+    void patternWithLiteralSkippedWithoutLiteral() {
+        PatternSet patternSet = patternSet("acct-\\d+", "\\d{3}");
+
+        assertThat(patternSet.findFirst("acct 12345").pattern().pattern()).isEqualTo("\\d{3}");
+        assertThat(patternSet.findFirst("acct-12345").pattern().pattern()).isEqualTo("acct-\\d+");
+    }
+
+    @Test
+    void matchStartChars() {
+        MatchStartChars startChars = MatchStartChars.of(Arrays.asList("acme", "big bank"),
+                Arrays.asList(Pattern.compile("\\w+@\\w+"), Pattern.compile("\\b[x-z]\\d+")));
+        assertThat(startChars.mayMatch("ACME", 0, 4)).isTrue();
+        assertThat(startChars.mayMatch("mail @", 0, 6)).isTrue();
+        assertThat(startChars.mayMatch("Y1", 0, 2)).isTrue();
+        assertThat(startChars.mayMatch("nothing", 0, 7)).isFalse();
+        assertThat(startChars.mayMatch("é", 0, 1)).isTrue();
+
+        assertThat(MatchStartChars.of(Arrays.asList("acme"), Arrays.asList(Pattern.compile("(\\d+)")))).isNull();
+        assertThat(MatchStartChars.of(Arrays.asList("acme"), Arrays.asList(Pattern.compile("a?\\d")))).isNull();
+    }
+
+    @Test
+    void matchStartCharsOfAlternatives() {
+        MatchStartChars startChars = MatchStartChars.of(Arrays.asList(),
+                Arrays.asList(Pattern.compile("acct-\\d+|\\d{9}"), Pattern.compile("x[|]y|q(r|s)")));
+        assertThat(startChars.mayMatch("123456789", 0, 9)).isTrue();
+        assertThat(startChars.mayMatch("acct-1", 0, 6)).isTrue();
+        assertThat(startChars.mayMatch("QZ", 0, 2)).isTrue();
+        assertThat(startChars.mayMatch("bbb", 0, 3)).isFalse();
+        // alternatives inside class or group are not split
+        assertThat(startChars.mayMatch("yyy", 0, 3)).isFalse();
+
+        PatternSet patternSet = patternSet("acct-\\d+|\\d{9}");
+        assertThat(patternSet.findFirst("id 123456789").group()).isEqualTo("123456789");
+
+        assertThat(MatchStartChars.of(Arrays.asList(), Arrays.asList(Pattern.compile("acct|")))).isNull();
+        assertThat(MatchStartChars.of(Arrays.asList(), Arrays.asList(Pattern.compile("acct|(\\d)")))).isNull();
+    }
+
+    @Test
+    void superLinearPatterns() {
+        assertThat(PatternCheck.isSuperLinear(Pattern.compile("(a+)+b"))).isTrue();
+        assertThat(PatternCheck.isSuperLinear(Pattern.compile("(.*a){8}b"))).isTrue();
+        assertThat(PatternCheck.isSuperLinear(Pattern.compile("\\w*\\w*\\w*x"))).isTrue();
+        assertThat(PatternCheck.isSuperLinear(Pattern.compile("acct-\\d+"))).isFalse();
+        assertThat(PatternCheck.isSuperLinear(Pattern.compile("[\\w.]+@[\\w.]+"))).isFalse();
+        assertThat(PatternCheck.isSuperLinear(Pattern.compile("\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}"))).isFalse();
+    }
+
+    @Test
+    void patternOverBudgetStopped() {
+        Map<Pattern, String> patterns = new LinkedHashMap<>();
+        patterns.put(Pattern.compile("(.*a){8}b"), "");
+        PatternSet patternSet = new PatternSet(patterns, 10);
+        // required literal is present, but not after the repeated part
+        StringBuilder text = new StringBuilder("b");
+        for (int i = 0; i < 40; i++) {
+            text.append('a');
+        }
+
+        assertThatThrownBy(() -> patternSet.findFirst(text))
+                .isInstanceOf(PatternBudgetExceededException.class);
+        assertThat(patternSet.findFirst("aaaaaaaab").group()).isEqualTo("aaaaaaaab");
+    }
+
+    @Test
+    void unionOfLinearPatternsNotStopped() {
+        Map<Pattern, String> patterns = new LinkedHashMap<>();
+        for (int i = 0; i < 50; i++) {
+            patterns.put(Pattern.compile("[a-z]{2}\\d{" + (i + 3) + "}"), "");
+        }
+        PatternSet patternSet = new PatternSet(patterns, 20);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 22_000) {
+            text.append("plain words of text ");
+        }
+        text.append("ab1234567");
+
+        assertThat(patternSet.findFirst(text).group()).isEqualTo("ab123");
+        List<String> found = new ArrayList<>();
+        patternSet.findAll(text, found, (list, matcher) -> {
+            list.add(matcher.group());
+            return list;
+        });
+        assertThat(found).hasSize(5);
+    }
+
+    @Test
+    void bufferLineOverOwnBudgetStopped() {
+        Map<Pattern, String> patterns = new LinkedHashMap<>();
+        patterns.put(Pattern.compile("(.*a){8}b"), "");
+        PatternSet patternSet = new PatternSet(patterns, 20);
+        StringBuilder clean = new StringBuilder();
+        while (clean.length() < 1_000_000) {
+            clean.append("plain words of text ");
+        }
+        StringBuilder catastrophic = new StringBuilder("b");
+        for (int i = 0; i < 20; i++) {
+            catastrophic.append('a');
+        }
+        // long clean line does not give its budget to the short catastrophic line
+        LineBuffer buffer = new LineBuffer(Arrays.asList(clean.toString(), catastrophic.toString()));
+
+        assertThatThrownBy(() -> patternSet.findAll(buffer, buffer.getText(), (line, matcher) -> {
+        })).isInstanceOf(PatternBudgetExceededException.class);
+        LineBuffer matching = new LineBuffer(Arrays.asList(clean.toString(), "aaaaaaaab"));
+        List<String> found = new ArrayList<>();
+        patternSet.findAll(matching, matching.getText(), (line, matcher) -> found.add(line + ":" + matcher.group()));
+        assertThat(found).containsExactly("1:aaaaaaaab");
+    }
+}
@@ -0,0 +1,44 @@
+package com.bt.code.egress.read;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WordDictionaryTest {
+
+    @Test
+    void findIgnoresCase() {
+        Map<String, String> values = new HashMap<>();
+        values.put("yuppi", "y{hash}");
+        values.put("straße", "");
+        values.put("x1", "");
+        WordDictionary dictionary = new WordDictionary(values);
+
+        String text = "Hello YUPPI, Straße x12 x1";
+        int slot = dictionary.find(text, 6, 11);
+        assertThat(slot >= 0).isTrue();
+        assertThat(dictionary.getKey(slot)).isEqualTo("yuppi");
+        assertThat(dictionary.getTemplate(slot)).isEqualTo("y{hash}");
+        assertThat(dictionary.getKey(dictionary.find(text, 13, 19))).isEqualTo("straße");
+        assertThat(dictionary.find(text, 20, 23)).isEqualTo(-1);
+        assertThat(dictionary.getKey(dictionary.find(text, 24, 26))).isEqualTo("x1");
+        assertThat(dictionary.find(text, 0, 5)).isEqualTo(-1);
+    }
+
+    @Test
+    void lineTokenMatcherFindsWholeWords() {
+        LineTokenMatcher matcher = new LineTokenMatcher(
+                new BasicWordMatcher(Collections.singletonMap("acme", "a{hash}"), Collections.emptyMap()));
+
+        List<String> words = matcher.getMatches("ACME, acmes and Acme").stream()
+                .map(m -> m.getLineToken().getWord() + "@" + m.getLineToken().getStartPos())
+                .collect(Collectors.toList());
+        assertThat(words).containsExactly("ACME@0", "Acme@16");
+    }
+}
@@ -12,7 +12,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.CopyOption;
 import java.nio.file.LinkOption;
 import java.nio.file.OpenOption;
@@ -60,6 +62,11 @@ public class FolderMock extends LocalFiles.LocalFilesImpl {
         };
     }
 
+    @Override
+    public BufferedWriter newBufferedWriter(Path path, Charset cs, OpenOption... options) {
+        return newBufferedWriter(path, options);
+    }
+
     @Override
     public BufferedReader newBufferedReader(Path path, Charset cs) {
         String content = read(path);
@@ -137,7 +144,7 @@ public class FolderMock extends LocalFiles.LocalFilesImpl {
     @Override
     public InputStream newInputStream(Path path, OpenOption... options) {
         String content = read(path);
-        return new ByteArrayInputStream(content.getBytes());
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
     }
 
     @Override
@@ -167,6 +174,29 @@ public class FolderMock extends LocalFiles.LocalFilesImpl {
         return path;
     }
 
+    @Override
+    public Path createTempFile(String prefix, String suffix) {
+        FolderMock tmp = createDirectory("tmp");
+        Path path = tmp.resolve(prefix + tmp.files.size() + suffix);
+        tmp.files.put(path.getFileName().toString(), "");
+        return path;
+    }
+
+    @Override
+    public boolean deleteIfExists(Path path) {
+        return exists(path) && getDirectParent(path, false).files.remove(path.getFileName().toString()) != null;
+    }
+
+    @Override
+    public long size(Path path) {
+        return read(path).getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    @Override
+    public ByteBuffer map(Path path) {
+        return ByteBuffer.wrap(read(path).getBytes(StandardCharsets.UTF_8));
+    }
+
     public void dump() {
         List<String> list = new ArrayList<>();
         dump("", list);
@@ -0,0 +1,72 @@
+package com.bt.code.egress.write;
+
+import com.bt.code.egress.file.ContentSniffer;
+import com.bt.code.egress.file.KeepEolFiles;
+import com.bt.code.egress.file.ReaderCharsetSelector;
+import com.bt.code.egress.process.FileLocation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FolderWriterTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void utf16KeepsCharsetAndBom() throws IOException {
+        for (Charset charset : new Charset[]{StandardCharsets.UTF_16LE, StandardCharsets.UTF_16BE}) {
+            Path input = tempDir.resolve("input.rc");
+            Files.write(input, "\uFEFFCompany: ACME\r\nnext".getBytes(charset));
+            FileLocation file = FileLocation.forFile(input);
+
+            List<List<String>> read = new ArrayList<>();
+            ContentSniffer.Content content;
+            try (InputStream inputStream = ContentSniffer.open(input)) {
+                content = ContentSniffer.sniff(inputStream);
+                ReaderCharsetSelector.doWithBufferedReader(file, inputStream, content, bufferedReader -> {
+                    KeepEolFiles.LineIterator iterator = KeepEolFiles.lines(bufferedReader);
+                    List<String> lines = new ArrayList<>();
+                    List<String> lineEnds = new ArrayList<>();
+                    while (iterator.hasNext()) {
+                        lines.add(iterator.next());
+                        lineEnds.add(iterator.getLineEnd());
+                    }
+                    read.add(lines);
+                    read.add(lineEnds);
+                    return null;
+                }, StandardCharsets.ISO_8859_1);
+            }
+            assertThat(content.getCharset()).isEqualTo(charset);
+            List<String> lines = read.get(0);
+            List<String> replaced = lines.stream().map(line -> line.replace("ACME", "w2810")).collect(Collectors.toList());
+
+            Path output = tempDir.resolve("output-" + charset);
+            FolderWriter folderWriter = new FolderWriter(output);
+            folderWriter.onFileCompleted(new FileCompleted(FileLocation.forFile(Paths.get("changed.rc")),
+                    lines, replaced, read.get(1)).withCharset(charset));
+            assertThat(Files.readAllBytes(output.resolve("changed.rc")))
+                    .isEqualTo("\uFEFFCompany: w2810\r\nnext".getBytes(charset));
+
+            // streamed file is encoded from UTF-8 temp file
+            Path replacedFile = Files.createTempFile(tempDir, "egress-", ".tmp");
+            Files.write(replacedFile, "\uFEFFCompany: w2810\r\nnext".getBytes(StandardCharsets.UTF_8));
+            folderWriter.onFileCompleted(FileCompleted.streamed(FileLocation.forFile(Paths.get("streamed.rc")),
+                    replacedFile, true, 20, 2).withCharset(charset));
+            assertThat(Files.readAllBytes(output.resolve("streamed.rc")))
+                    .isEqualTo("\uFEFFCompany: w2810\r\nnext".getBytes(charset));
+            assertThat(Files.exists(replacedFile)).isFalse();
+        }
+    }
+}